@@ -0,0 +1,238 @@
+package Filters;
+
+import java.io.DataOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+
+import main.MoreoverArticle;
+
+/*================================================================================
+ * AhoCorasickMatcher
+ *
+ * Aho-Corasick automaton over the normalized dictionary names. matches names anywhere
+ * in the normalized (lowercase alphanumeric) article text (see Filter.normalize).
+ *
+ * the trie is built with per-state hash maps, then flattened into sorted edge arrays
+ * so that the compiled form stays compact for tens of thousands of names.
+ *===============================================================================*/
+public class AhoCorasickMatcher extends DictionaryMatcher {
+
+	//build state
+	private List<HashMap<Character,Integer>> buildEdges = new ArrayList<HashMap<Character,Integer>>();
+	private List<Integer> buildOutput = new ArrayList<Integer>();
+
+	//compiled automaton
+	private IntBuffer edgeStart;
+	private CharBuffer edgeChar;
+	private IntBuffer edgeTarget;
+	private IntBuffer fail;
+	private IntBuffer output;
+	private IntBuffer outputLink;
+
+	public AhoCorasickMatcher() {
+		buildEdges.add(new HashMap<Character,Integer>());
+		buildOutput.add(NONE);
+	}
+	/*================================================================================
+	 * AhoCorasickMatcher: maps a compiled automaton from a snapshot file, positioned
+	 * after the file header.
+	 *===============================================================================*/
+	public AhoCorasickMatcher(ByteBuffer in) {
+		patternCount = in.getInt();
+		edgeStart = DictionarySnapshotFile.mapInts(in);
+		edgeChar = DictionarySnapshotFile.mapChars(in);
+		edgeTarget = DictionarySnapshotFile.mapInts(in);
+		fail = DictionarySnapshotFile.mapInts(in);
+		output = DictionarySnapshotFile.mapInts(in);
+		outputLink = DictionarySnapshotFile.mapInts(in);
+		buildEdges = null;
+		buildOutput = null;
+		compiled = true;
+	}
+
+	/*================================================================================
+	 * addEntry: adds a normalized name to the automaton, reported as 'symbol'.
+	 *===============================================================================*/
+	public void addEntry(String name, int symbol) throws Exception {
+
+		if (compiled) { throw new Exception("matcher already compiled"); }
+
+		int state = 0;
+		for (int i = 0; i < name.length(); i++) {
+			Character c = name.charAt(i);
+			Integer target = buildEdges.get(state).get(c);
+			if (target == null) {
+				target = buildEdges.size();
+				buildEdges.add(new HashMap<Character,Integer>());
+				buildOutput.add(NONE);
+				buildEdges.get(state).put(c, target);
+			}
+			state = target;
+		}
+
+		if (buildOutput.get(state) == NONE) { patternCount++; }
+		buildOutput.set(state, symbol);
+	}
+	/*================================================================================
+	 * compile: flattens the trie and computes failure and output links.
+	 *===============================================================================*/
+	@Override
+	public void compile() throws Exception {
+
+		if (compiled) { throw new Exception("matcher already compiled"); }
+
+		int stateCount = buildEdges.size();
+		int edgeCount = stateCount - 1;
+
+		int[] edgeStart = new int[stateCount + 1];
+		char[] edgeChar = new char[edgeCount];
+		int[] edgeTarget = new int[edgeCount];
+		int[] fail = new int[stateCount];
+		int[] output = new int[stateCount];
+		int[] outputLink = new int[stateCount];
+		this.edgeStart = IntBuffer.wrap(edgeStart);
+		this.edgeChar = CharBuffer.wrap(edgeChar);
+		this.edgeTarget = IntBuffer.wrap(edgeTarget);
+		this.fail = IntBuffer.wrap(fail);
+		this.output = IntBuffer.wrap(output);
+		this.outputLink = IntBuffer.wrap(outputLink);
+
+		//flatten edges, sorted by character within each state for binary search
+		int e = 0;
+		for (int s = 0; s < stateCount; s++) {
+			edgeStart[s] = e;
+			Character[] chars = buildEdges.get(s).keySet().toArray(new Character[0]);
+			Arrays.sort(chars);
+			for (Character c: chars) {
+				edgeChar[e] = c;
+				edgeTarget[e] = buildEdges.get(s).get(c);
+				e++;
+			}
+			output[s] = buildOutput.get(s);
+		}
+		edgeStart[stateCount] = e;
+
+		//breadth first traversal to set failure links and output links
+		Queue<Integer> queue = new LinkedList<Integer>();
+		fail[0] = 0;
+		outputLink[0] = NONE;
+		for (int i = edgeStart[0]; i < edgeStart[1]; i++) {
+			fail[edgeTarget[i]] = 0;
+			outputLink[edgeTarget[i]] = NONE;
+			queue.add(edgeTarget[i]);
+		}
+		while (!queue.isEmpty()) {
+			int s = queue.poll();
+			for (int i = edgeStart[s]; i < edgeStart[s+1]; i++) {
+				int t = edgeTarget[i];
+				int f = fail[s];
+				int g;
+				while ((g = step(f, edgeChar[i])) == NONE && f != 0) {
+					f = fail[f];
+				}
+				fail[t] = (g == NONE || g == t) ? 0 : g;
+				outputLink[t] = output[fail[t]] != NONE ? fail[t] : outputLink[fail[t]];
+				queue.add(t);
+			}
+		}
+
+		//release build state
+		buildEdges = null;
+		buildOutput = null;
+
+		compiled = true;
+	}
+	/*================================================================================
+	 * write: writes the pattern count followed by the automaton arrays.
+	 *===============================================================================*/
+	@Override
+	public void write(DataOutputStream out) throws Exception {
+		if (!compiled) { throw new Exception("matcher not compiled"); }
+		out.writeInt(patternCount);
+		DictionarySnapshotFile.writeInts(out, edgeStart);
+		DictionarySnapshotFile.writeChars(out, edgeChar);
+		DictionarySnapshotFile.writeInts(out, edgeTarget);
+		DictionarySnapshotFile.writeInts(out, fail);
+		DictionarySnapshotFile.writeInts(out, output);
+		DictionarySnapshotFile.writeInts(out, outputLink);
+	}
+	/*================================================================================
+	 * match: scans the article's normalized title or content.
+	 *===============================================================================*/
+	@Override
+	public void match(MoreoverArticle article, boolean title, BitSet symbolsFound)
+	throws Exception {
+		if (title) {
+			match(article.getNormalizedTitle(), article.getNormalizedTitleLength(), 
+					symbolsFound);
+		} else {
+			match(article.getNormalizedContent(), article.getNormalizedContentLength(), 
+					symbolsFound);
+		}
+	}
+	/*================================================================================
+	 * match: scans the first 'length' chars of a normalized body of text once, and sets
+	 * the symbol of every name found in the argument set.
+	 *===============================================================================*/
+	public void match(char[] text, int length, BitSet symbolsFound) throws Exception {
+		match(text, length, symbolsFound, Integer.MAX_VALUE);
+	}
+	/*================================================================================
+	 * match: as above, but stops as soon as the argument set holds 'limit' symbols
+	 * (including any set before the call). returns the number of symbols in the set.
+	 *===============================================================================*/
+	public int match(char[] text, int length, BitSet symbolsFound, int limit) 
+	throws Exception {
+
+		if (!compiled) { throw new Exception("matcher not compiled"); }
+
+		int count = symbolsFound.cardinality();
+		if (count >= limit) { return count; }
+
+		int state = 0;
+		for (int i = 0; i < length; i++) {
+			char c = text[i];
+			int t;
+			while ((t = step(state, c)) == NONE && state != 0) {
+				state = fail.get(state);
+			}
+			state = (t == NONE) ? 0 : t;
+
+			//report names ending at this state and at all of its suffix states
+			int o = output.get(state) != NONE ? state : outputLink.get(state);
+			while (o != NONE) {
+				int symbol = output.get(o);
+				if (!symbolsFound.get(symbol)) {
+					symbolsFound.set(symbol);
+					if (++count >= limit) { return count; }
+				}
+				o = outputLink.get(o);
+			}
+		}
+		return count;
+	}
+	/*================================================================================
+	 * step: follows the goto edge for character c out of state s, or returns NONE.
+	 *===============================================================================*/
+	private int step(int s, char c) {
+		int lo = edgeStart.get(s);
+		int hi = edgeStart.get(s+1) - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			char m = edgeChar.get(mid);
+			if (m < c) { lo = mid + 1; }
+			else if (m > c) { hi = mid - 1; }
+			else { return edgeTarget.get(mid); }
+		}
+		return NONE;
+	}
+
+}
@@ -3,9 +3,7 @@ package Filters;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Set;
 
-import dbconnect.general.document_relation_row;
 import main.MoreoverArticle;
 
 public class CategoryFilter extends Filter {
@@ -24,7 +22,9 @@ public class CategoryFilter extends Filter {
 		this.active = active;
 	}
 
-	@Override
+	/*================================================================================
+	 * relevanceCheck: true if the article source category is accepted
+	 *===============================================================================*/
 	public boolean relevanceCheck(MoreoverArticle article) throws Exception {
 		
 		if (!active) { return false; }
@@ -37,12 +37,4 @@ public class CategoryFilter extends Filter {
 		return false;
 	}
 
-	@Override
-	public String populateArticle(MoreoverArticle article, Set<String> queriesFound) throws Exception {
-		return null;
-	}
-
-	@Override
-	public void populateRelation(String query, document_relation_row relation) throws Exception { }
-
 }
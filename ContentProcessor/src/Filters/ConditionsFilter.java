@@ -4,17 +4,15 @@ import java.sql.ResultSet;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Set;
 
 import dbconnect.general.condition_statements;
-import dbconnect.general.document_relation_row;
 import dbconnect.main.DBConnect;
 import main.Main;
-import main.MoreoverArticle;
 
 public class ConditionsFilter extends Filter {
 
-	private static HashMap<String,Integer> queryMap;
+	private HashMap<String,Integer> queryMap;
+	private HashMap<String,String> spellingMap;
 	
 	@Override
 	public void initialize(String threadStamp, boolean active) throws Exception {
@@ -25,55 +23,59 @@ public class ConditionsFilter extends Filter {
 		long startTime = System.currentTimeMillis();
 		
 		HashMap<String,Integer> condMap = new HashMap<String,Integer>();
+		HashMap<String,String> spellings = new HashMap<String,String>();
 		
 		//intialize statement
 		String selectQueryProd = condition_statements.Select(new ArrayList<>(
 						Arrays.asList("id","name")));
 		
-		DBConnect con = new DBConnect();
-		Main.connectToDatabase(con);
-		ResultSet rsCond = con.ExecuteQuery(selectQueryProd);
-		con.CommitClose();	
+		DBConnect con = Main.dbPool.borrow();
 		
 		//constuct string list from result set
-		while (rsCond.next()) {
-			String temp_condition =  rsCond.getString("name");
-			if (temp_condition == null) {
-				throw new Exception("null drugname found");
-			} else {
-				temp_condition = temp_condition.toLowerCase().replaceAll("[^a-zA-Z0-9]", "").trim();
+		try {
+			ResultSet rsCond = con.ExecuteQuery(selectQueryProd);
+			while (rsCond.next()) {
+				String temp_condition =  rsCond.getString("name");
+				if (temp_condition == null) {
+					throw new Exception("null drugname found");
+				} else {
+					String spelling = temp_condition.trim();
+					temp_condition = temp_condition.toLowerCase().replaceAll("[^a-zA-Z0-9]", "").trim();
+					spellings.put(spelling, temp_condition);
+				}
+				condMap.put(temp_condition, rsCond.getInt("id"));
 			}
-			condMap.put(temp_condition, rsCond.getInt("id"));
+		} finally {
+			Main.dbPool.release(con);
 		}
 		
-		printToConsole(threadStamp, "read " + condMap.size() + " conditions");			
-		printToConsole(threadStamp, "run time:  " + 
-				((System.currentTimeMillis() - startTime)/1000) + " sec");	
+		printToConsole(threadStamp, "read " + condMap.size() + " conditions (" + 
+				(System.currentTimeMillis() - startTime) + " mls)");
 		
 		queryMap = condMap;
+		spellingMap = spellings;
 		
 	}
-
-	@Override
-	public boolean relevanceCheck(MoreoverArticle article) throws Exception {
-		return false;
+	
+	public HashMap<String,Integer> getMap() {
+		return queryMap;
 	}
-
-	@Override
-	public String populateArticle(MoreoverArticle article, Set<String> queriesFound) throws Exception {
-		if (!active) { return null; }
-		for (String q: queryMap.keySet()) {
-			if (doesMatch(article.title, q) || doesMatch(article.content, q)) {
-				queriesFound.add(q);
-			}
-		}
-		return null;
+	
+	/*================================================================================
+	 * getSpellings: original (trimmed) spelling of each name, mapped to its normalized
+	 * key in the query map. used to build the whole word matcher.
+	 *===============================================================================*/
+	public HashMap<String,String> getSpellings() {
+		return spellingMap;
 	}
-
+	
+	/*================================================================================
+	 * clear: drops the names once the dictionary snapshot is built.
+	 *===============================================================================*/
 	@Override
-	public void populateRelation(String query, document_relation_row relation) throws Exception {
-		if (!active) { return; }
-		relation.condition_id = queryMap.get(query);
+	public void clear() {
+		queryMap = null;
+		spellingMap = null;
 	}
 
 }
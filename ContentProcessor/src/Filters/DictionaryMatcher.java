@@ -0,0 +1,57 @@
+package Filters;
+
+import java.io.DataOutputStream;
+import java.util.BitSet;
+
+import main.MoreoverArticle;
+
+/*================================================================================
+ * DictionaryMatcher
+ *
+ * base class for the multi-pattern matchers built over every name in the drug,
+ * product, query and condition dictionaries. A single pass over an article's title or
+ * content reports the symbol (see SymbolTable) of every dictionary name that appears
+ * in it. Matching modes:
+ *
+ *AhoCorasickMatcher: substring matching on the normalized text (MATCH_SUBSTRING)
+ *TokenShingleMatcher: whole word matching on token shingles (MATCH_WORD)
+ *
+ * usage: add all names, compile once, then match from any number of threads. the
+ * compiled matcher is never modified, so matching needs no locking. a compiled matcher
+ * can also be written to and mapped from a snapshot file (see DictionarySnapshotFile).
+ * compiled structures are held in nio buffers, so the same code runs over heap arrays
+ * or over a memory mapped file.
+ *===============================================================================*/
+public abstract class DictionaryMatcher {
+
+	protected static final int NONE = SymbolTable.NONE;
+
+	protected boolean compiled = false;
+	protected int patternCount = 0;
+
+	/*================================================================================
+	 * compile: builds the matching structure. must be called once, after all names
+	 * have been added and before any matching.
+	 *===============================================================================*/
+	public abstract void compile() throws Exception;
+
+	/*================================================================================
+	 * match: scans the article title (or content) once, and sets the symbol of every
+	 * name found in the argument set.
+	 *===============================================================================*/
+	public abstract void match(MoreoverArticle article, boolean title, BitSet symbolsFound)
+	throws Exception;
+
+	/*================================================================================
+	 * write: writes the compiled matcher to a snapshot file. see DictionarySnapshotFile.
+	 *===============================================================================*/
+	public abstract void write(DataOutputStream out) throws Exception;
+
+	/*================================================================================
+	 * size: number of patterns in the matcher.
+	 *===============================================================================*/
+	public int size() {
+		return patternCount;
+	}
+
+}
@@ -0,0 +1,76 @@
+package Filters;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/*================================================================================
+ * DictionaryRefresher
+ *
+ * this class is designed to run indefinitely.
+ *
+ * rereads the dictionary tables and rebuilds the matcher every refreshMillis, or
+ * sooner when requestRefresh is called. the rebuild runs entirely on this thread, and
+ * the result is published by FilterOperator.refreshDictionaries in a single atomic
+ * swap, so reader threads keep matching against the previous snapshot until then. a
+ * failed refresh leaves the previous snapshot in place.
+ *===============================================================================*/
+public class DictionaryRefresher implements Runnable {
+
+	//parameters
+	public FilterOperator filter = null;
+	public long refreshMillis = -1;
+
+	//return values
+	public long refreshCount = 0;
+	public long exceptionCount = 0;
+
+	public String threadStamp = "(reader dictionary) ";
+
+	private Semaphore refreshRequest = new Semaphore(0);
+
+	/*================================================================================
+	 * run
+	 *===============================================================================*/
+	@Override
+	public void run() {
+
+		if (filter == null || refreshMillis <= 0) {
+			printToConsole("refresher not initialized. filter: " + filter +
+					", refreshMillis: " + refreshMillis);
+			return;
+		}
+
+		printToConsole("running dictionary refresher (every " + refreshMillis + " mls)");
+		while (true) {
+			try {
+				//wait for the scheduled time, or an earlier request.
+				if (refreshRequest.tryAcquire(refreshMillis, TimeUnit.MILLISECONDS)) {
+					refreshRequest.drainPermits();
+					printToConsole("refresh requested");
+				}
+				filter.refreshDictionaries(threadStamp);
+				refreshCount++;
+			} catch (InterruptedException e) {
+				printToConsole("interrupted. thread terminated");
+				return;
+			} catch (Exception e) {
+				printToConsole("exception: " + e.getMessage() + ". keeping previous dictionaries");
+				e.printStackTrace();
+				exceptionCount++;
+			}
+		}
+	}
+	/*================================================================================
+	 * requestRefresh: triggers a refresh without waiting for the schedule.
+	 *===============================================================================*/
+	public void requestRefresh() {
+		refreshRequest.release();
+	}
+	/*================================================================================
+	 * printToConsole: prints a string to the console, including thread identification
+	 *===============================================================================*/
+	protected void printToConsole(String statement) {
+		System.out.println(threadStamp + statement);
+	}
+
+}
@@ -0,0 +1,38 @@
+package Filters;
+
+/*================================================================================
+ * DictionarySnapshot
+ *
+ * immutable, fully built set of dictionaries: the symbol table of every dictionary
+ * name and its ids, and the compiled matcher that reports those symbols. FilterOperator
+ * publishes the current snapshot through a single atomic reference, so readers never
+ * see a partially built dictionary.
+ *===============================================================================*/
+public class DictionarySnapshot {
+
+	public final SymbolTable symbols;
+	public final DictionaryMatcher matcher;
+	public final long buildTimeMillis;
+
+	public DictionarySnapshot(SymbolTable symbols, DictionaryMatcher matcher,
+			long buildTimeMillis) {
+		this.symbols = symbols;
+		this.matcher = matcher;
+		this.buildTimeMillis = buildTimeMillis;
+	}
+
+	/*================================================================================
+	 * countAdded: number of entries in this snapshot that are not in 'previous'.
+	 *===============================================================================*/
+	public int countAdded(DictionarySnapshot previous) {
+		return symbols.countAdded(previous == null ? null : previous.symbols);
+	}
+	/*================================================================================
+	 * countRemoved: number of entries in 'previous' that are not in this snapshot.
+	 *===============================================================================*/
+	public int countRemoved(DictionarySnapshot previous) {
+		if (previous == null) { return 0; }
+		return previous.countAdded(this);
+	}
+
+}
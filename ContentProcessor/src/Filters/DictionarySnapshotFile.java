@@ -0,0 +1,224 @@
+package Filters;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/*================================================================================
+ * DictionarySnapshotFile
+ *
+ * reads and writes a compiled DictionarySnapshot as a versioned binary file, so that
+ * a restart can begin matching immediately instead of waiting on the database. the
+ * file is memory mapped on load and the matcher arrays are read directly from the
+ * mapping, so processes on the same host share the same pages. layout:
+ *
+ *header: magic, version, match mode
+ *symbol table: names followed by one id column per source, and combination ids
+ *matcher: pattern count followed by the matcher structure
+ *trailer: CRC32 of everything before it
+ *
+ * all values are big endian. arrays are length prefixed and aligned to their element
+ * size. files are written to a uniquely named temporary file in the same directory
+ * and renamed into place, so a mapped file is never modified while in use, and
+ * processes refreshing the snapshot at the same time never write the same file. map
+ * rejects a file whose checksum does not match, or whose arrays do not end exactly at
+ * the trailer, so a damaged file fails on load rather than inside a matcher.
+ *===============================================================================*/
+public class DictionarySnapshotFile {
+
+	public static final int MAGIC = 0x4B594D44;
+	public static final int VERSION = 3;
+	private static final int TRAILER_BYTES = 8;
+
+	/*================================================================================
+	 * write: writes a snapshot built with the given match mode to 'path'.
+	 *===============================================================================*/
+	public static void write(DictionarySnapshot snapshot, int matchMode, String path)
+	throws Exception {
+
+		File target = new File(path).getAbsoluteFile();
+		File temp = File.createTempFile(target.getName(), ".tmp", target.getParentFile());
+
+		try {
+			CRC32 checksum = new CRC32();
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+					new CheckedOutputStream(new FileOutputStream(temp), checksum)));
+			try {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(matchMode);
+
+				snapshot.symbols.write(out);
+				snapshot.matcher.write(out);
+
+				out.flush();
+				out.writeLong(checksum.getValue());
+			} finally {
+				out.close();
+			}
+
+			Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			temp.delete();
+		}
+	}
+	/*================================================================================
+	 * map: maps the snapshot file at 'path'. returns null if there is no file, or if it
+	 * was written by a different version or with a different match mode. throws if the
+	 * file is damaged.
+	 *===============================================================================*/
+	public static DictionarySnapshot map(String path, int matchMode) throws Exception {
+
+		File file = new File(path);
+		if (!file.isFile()) { return null; }
+
+		long startTime = System.currentTimeMillis();
+
+		MappedByteBuffer in;
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			in = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+		} finally {
+			raf.close();
+		}
+
+		if (in.limit() < 3*4 + TRAILER_BYTES || in.getInt() != MAGIC || 
+				in.getInt() != VERSION || in.getInt() != matchMode) {
+			return null;
+		}
+
+		//check the whole file before any of it is used.
+		int end = in.limit() - TRAILER_BYTES;
+		ByteBuffer body = in.duplicate();
+		body.position(0);
+		body.limit(end);
+		CRC32 checksum = new CRC32();
+		checksum.update(body);
+		if (checksum.getValue() != in.getLong(end)) {
+			throw new Exception("dictionary snapshot checksum mismatch: " + path);
+		}
+		in.limit(end);
+
+		SymbolTable symbols;
+		DictionaryMatcher matcher;
+		try {
+			symbols = new SymbolTable(in);
+			if (matchMode == FilterOperator.MATCH_WORD) { matcher = new TokenShingleMatcher(in); }
+			else { matcher = new AhoCorasickMatcher(in); }
+		} catch (RuntimeException e) {
+			throw new Exception("dictionary snapshot malformed: " + path + " (" + e + ")");
+		}
+		if (in.position() != end) {
+			throw new Exception("dictionary snapshot malformed: " + path + " (" + 
+					(end - in.position()) + " bytes left over)");
+		}
+
+		return new DictionarySnapshot(symbols, matcher,
+				System.currentTimeMillis() - startTime);
+	}
+
+	/*================================================================================
+	 * array helpers: each array is written as its length followed by its elements,
+	 * padded so that the elements are aligned. the map functions return a view of the
+	 * elements in place, and advance the buffer past them.
+	 *===============================================================================*/
+	protected static void writeInts(DataOutputStream out, IntBuffer values) throws IOException {
+		out.writeInt(values.limit());
+		for (int i = 0; i < values.limit(); i++) {
+			out.writeInt(values.get(i));
+		}
+	}
+	protected static IntBuffer mapInts(ByteBuffer in) {
+		int length = in.getInt();
+		IntBuffer values = slice(in, 4L*length).asIntBuffer();
+		return values;
+	}
+	protected static void writeChars(DataOutputStream out, CharBuffer values) throws IOException {
+		out.writeInt(values.limit());
+		for (int i = 0; i < values.limit(); i++) {
+			out.writeChar(values.get(i));
+		}
+		pad(out, 4);
+	}
+	protected static CharBuffer mapChars(ByteBuffer in) {
+		int length = in.getInt();
+		CharBuffer values = slice(in, 2L*length).asCharBuffer();
+		align(in, 4);
+		return values;
+	}
+	protected static void writeLongs(DataOutputStream out, LongBuffer values) throws IOException {
+		out.writeInt(values.limit());
+		pad(out, 8);
+		for (int i = 0; i < values.limit(); i++) {
+			out.writeLong(values.get(i));
+		}
+	}
+	protected static LongBuffer mapLongs(ByteBuffer in) {
+		int length = in.getInt();
+		align(in, 8);
+		return slice(in, 8L*length).asLongBuffer();
+	}
+	protected static void writeStrings(DataOutputStream out, String[] values) throws IOException {
+		out.writeInt(values.length);
+		for (String s: values) {
+			out.writeInt(s.length());
+			out.writeChars(s);
+		}
+		pad(out, 4);
+	}
+	protected static String[] readStrings(ByteBuffer in) {
+		String[] values = new String[checkCount(in, in.getInt(), 4)];
+		for (int i = 0; i < values.length; i++) {
+			char[] chars = new char[checkCount(in, in.getInt(), 2)];
+			for (int j = 0; j < chars.length; j++) {
+				chars[j] = in.getChar();
+			}
+			values[i] = new String(chars);
+		}
+		align(in, 4);
+		return values;
+	}
+
+	private static ByteBuffer slice(ByteBuffer in, long byteLength) {
+		if (byteLength < 0 || byteLength > in.remaining()) {
+			throw new IllegalArgumentException("array of " + byteLength + " bytes at " + 
+					in.position() + ", " + in.remaining() + " bytes left");
+		}
+		ByteBuffer slice = in.slice();
+		slice.limit((int) byteLength);
+		in.position(in.position() + (int) byteLength);
+		return slice;
+	}
+	private static int checkCount(ByteBuffer in, int count, int minBytes) {
+		if (count < 0 || (long) count*minBytes > in.remaining()) {
+			throw new IllegalArgumentException("count of " + count + " at " + in.position() + 
+					", " + in.remaining() + " bytes left");
+		}
+		return count;
+	}
+	private static void pad(DataOutputStream out, int alignment) throws IOException {
+		while (out.size() % alignment != 0) {
+			out.writeByte(0);
+		}
+	}
+	private static void align(ByteBuffer in, int alignment) {
+		while (in.position() % alignment != 0) {
+			in.get();
+		}
+	}
+
+}
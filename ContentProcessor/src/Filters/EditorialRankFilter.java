@@ -3,9 +3,7 @@ package Filters;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Set;
 
-import dbconnect.general.document_relation_row;
 import main.MoreoverArticle;
 
 public class EditorialRankFilter extends Filter {
@@ -18,7 +16,9 @@ public class EditorialRankFilter extends Filter {
 		this.active = active;
 	}
 
-	@Override
+	/*================================================================================
+	 * relevanceCheck: true if the article editorial rank is accepted
+	 *===============================================================================*/
 	public boolean relevanceCheck(MoreoverArticle article) throws Exception {
 		
 		if (!active) { return false; }
@@ -31,12 +31,4 @@ public class EditorialRankFilter extends Filter {
 		return false;
 	}
 
-	@Override
-	public String populateArticle(MoreoverArticle article, Set<String> queriesFound) throws Exception {
-		return null;
-	}
-
-	@Override
-	public void populateRelation(String query, document_relation_row relation) throws Exception { }
-
 }
@@ -1,14 +1,17 @@
 package Filters;
 
-import java.util.Set;
-
-import dbconnect.general.document_relation_row;
-import main.MoreoverArticle;
+import java.util.Arrays;
 
 public abstract class Filter {
 
 	public static final int MIN_NAME_LENGTH = 3;
 	public static final int SNIPPET_LENGTH = 1000;
+	//capacity needed to normalize or tokenize an article field into a reused array
+	public static final int NORMALIZED_CAPACITY = SNIPPET_LENGTH-1;
+	public static final int TOKEN_CAPACITY = NORMALIZED_CAPACITY/2 + 1;
+	
+	private static final long FNV_OFFSET = 0xCBF29CE484222325L;
+	private static final long FNV_PRIME = 0x100000001B3L;
 	
 	public boolean active = false;
 	
@@ -18,40 +21,82 @@ public abstract class Filter {
 	public abstract void initialize(String threadStamp, boolean active) throws Exception;
 	
 	/*================================================================================
-	 * relevanceCheck: checks an unverified article for relevance
+	 * clear: drops the data read by initialize, once it has been compiled into the
+	 * dictionary snapshot. filters that keep nothing after initialize need not override.
 	 *===============================================================================*/
-	public abstract boolean relevanceCheck(MoreoverArticle article) throws Exception;
+	public void clear() { }
 	
 	/*================================================================================
-	 * populateArticle: populates a verified article with information
+	 * normalize: reduces a body of text to the form used for matching: lowercase letters
+	 * and digits only, read up to SNIPPET_LENGTH. returns an empty array for null text.
 	 *===============================================================================*/
-	public abstract String populateArticle(MoreoverArticle article, Set<String> queriesFound) 
-	throws Exception;
-	
+	public static char[] normalize(String text) {
+		
+		if (text == null) { return new char[0]; }
+		
+		char[] normalized = new char[Math.min(text.length(), NORMALIZED_CAPACITY)];
+		int n = normalize(text, normalized);
+		return n == normalized.length ? normalized : Arrays.copyOf(normalized, n);
+	}
 	/*================================================================================
-	 * populateRelation: populates a database relation row with relevant information
+	 * normalize: as above, into an array of at least NORMALIZED_CAPACITY, so that it can
+	 * be reused. returns the number of chars written.
 	 *===============================================================================*/
-	public abstract void populateRelation(String query, document_relation_row relation) 
-	throws Exception;
+	public static int normalize(String text, char[] normalized) {
+		
+		if (text == null) { return 0; }
+		
+		int length = Math.min(text.length(), NORMALIZED_CAPACITY);
+		int n = 0;
+		for (int i = 0; i < length; i++) {
+			char c = Character.toLowerCase(text.charAt(i));
+			if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')) {
+				normalized[n++] = c;
+			}
+		}
+		return n;
+	}
 	
 	/*================================================================================
-	 * doesMatch: checks a body of text 'content' for appearance of a string 'query'
+	 * tokenize: splits a body of text into tokens (runs of letters and digits, 
+	 * lowercased) and returns the hash of each token, in order. the default form reads
+	 * the same leading portion of the text as normalize.
+	 *===============================================================================*/
+	public static long[] tokenize(String text) {
+		return tokenize(text, NORMALIZED_CAPACITY);
+	}
+	public static long[] tokenize(String text, int maxLength) {
+		
+		if (text == null) { return new long[0]; }
+		
+		long[] tokens = new long[Math.min(text.length(), maxLength)/2 + 1];
+		return Arrays.copyOf(tokens, tokenize(text, maxLength, tokens));
+	}
+	/*================================================================================
+	 * tokenize: as above, into an array of at least maxLength/2 + 1 (TOKEN_CAPACITY for
+	 * the default length), so that it can be reused. returns the number of tokens.
 	 *===============================================================================*/
-	protected static boolean doesMatch(String content, String query) {
+	public static int tokenize(String text, int maxLength, long[] tokens) {
 		
-		//return if the query is too short.
-		if( query.replaceAll("[^a-zA-Z0-9]","").trim().length() <= MIN_NAME_LENGTH){
-			return false;
-		}		
-		content = content.length() >= SNIPPET_LENGTH ? content.substring(0, 
-				SNIPPET_LENGTH-1) : content;
-		content = content.toLowerCase().replaceAll("[^a-zA-Z0-9]", "").trim();
+		if (text == null) { return 0; }
 		
-		query = query.toLowerCase().replaceAll("[^a-zA-Z0-9]", "").trim();
-		if (content.contains(query)) {
-			return true ;
+		int length = Math.min(text.length(), maxLength);
+		int n = 0;
+		long hash = FNV_OFFSET;
+		boolean inToken = false;
+		for (int i = 0; i < length; i++) {
+			char c = Character.toLowerCase(text.charAt(i));
+			if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')) {
+				hash = (hash ^ c) * FNV_PRIME;
+				inToken = true;
+			} else if (inToken) {
+				tokens[n++] = hash;
+				hash = FNV_OFFSET;
+				inToken = false;
+			}
 		}
-		return false ;
+		if (inToken) { tokens[n++] = hash; }
+		return n;
 	}
 	
 	/*================================================================================
@@ -1,10 +1,18 @@
 package Filters;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
 
 import dbconnect.general.document_relation_row;
 import main.MoreoverArticle;
@@ -16,9 +24,11 @@ import main.MoreoverArticle;
  *decoupling this process from the rest of the program. Filtering phases:
  *
  *init
- *checkRelevantArticle
+ *checkRelevantArticle (checkSourceRelevance, then checkContentRelevance)
  *populateRelevantArticle
  *initRelationsRows
+ *
+ *refreshDictionaries may be called at any time after init (see DictionaryRefresher).
  *===============================================================================*/
 public class FilterOperator {
 	
@@ -32,35 +42,166 @@ public class FilterOperator {
 	private ProductsFilter productsFilter = new ProductsFilter();
 	private QueryFilter queryFilter = new QueryFilter();
 	
+	//current dictionaries. replaced as a whole on refresh, never modified in place.
+	private final AtomicReference<DictionarySnapshot> dictionary = 
+			new AtomicReference<DictionarySnapshot>();
+	
 	public static final int SNIPPET_LENGTH = 1000;
 	public static final int MIN_NAME_LENGTH = 3;
 	
+	//matching modes: substring of the normalized text, or whole words only.
+	public static final int MATCH_SUBSTRING = 0;
+	public static final int MATCH_WORD = 1;
+	
+	//database dictionaries in use
+	private static final boolean GENERIC_NAMES_ACTIVE = true;
+	private static final boolean PRODUCTS_ACTIVE = true;
+	private static final boolean CONDITIONS_ACTIVE = true;
+	private static final boolean QUERIES_ACTIVE = false;
+	
+	public int matchMode = MATCH_SUBSTRING;
+	public String snapshotPath = null;
+	public String keywordListPath = null;
+	public boolean loadedFromSnapshot = false;
 	public boolean initialized = true;
 	
 	/*================================================================================
-	 * init: initialize all of the filter values.
+	 * init: initialize all of the filter values. if snapshotPath is set and holds a
+	 * usable snapshot, the dictionaries are mapped from it and the database is not read;
+	 * loadedFromSnapshot is then set, and the caller should schedule a refresh. the
+	 * keyword prefilter is active if keywordListPath is set.
 	 *===============================================================================*/
 	public void init(String threadStamp, int matchThreshold) throws Exception {
 		
-		HashMap<String, Integer> combIdMap = new HashMap<String,Integer>();
-
 		categoryFilter.initialize(threadStamp, true);
 				
 		editorialRankFilter.initialize(threadStamp, true);
 		
-		genericNamesFilter.initialize(threadStamp, combIdMap, true);
+		keywordFilter.initialize(threadStamp, keywordListPath, matchThreshold, 
+				keywordListPath != null);
 		
-		productsFilter.initialize(threadStamp, combIdMap, true);
+		DictionarySnapshot mapped = mapSnapshot(threadStamp);
+		if (mapped != null) {
+			genericNamesFilter.active = GENERIC_NAMES_ACTIVE;
+			productsFilter.active = PRODUCTS_ACTIVE;
+			combinationFilter.active = GENERIC_NAMES_ACTIVE || PRODUCTS_ACTIVE;
+			conditionsFilter.active = CONDITIONS_ACTIVE;
+			queryFilter.active = QUERIES_ACTIVE;
+			
+			publishSnapshot(threadStamp, mapped);
+			loadedFromSnapshot = true;
+			initialized = true;
+			return;
+		}
+		
+		HashMap<String, Integer> combIdMap = loadDictionaries(threadStamp, 
+				GENERIC_NAMES_ACTIVE, PRODUCTS_ACTIVE, CONDITIONS_ACTIVE, QUERIES_ACTIVE);
 		
-		combinationFilter.initialize(threadStamp, combIdMap, true);
+		DictionarySnapshot snapshot = buildSnapshot(threadStamp, combIdMap);
+		publishSnapshot(threadStamp, snapshot);
+		saveSnapshot(threadStamp, snapshot);
 		
-		conditionsFilter.initialize(threadStamp, true);
+		initialized = true;
+	}
+	/*================================================================================
+	 * refreshDictionaries: rereads all active database dictionaries and rebuilds the
+	 * matcher, then publishes the result in a single swap. readers continue to use the
+	 * previous snapshot until the new one is complete. see DictionaryRefresher.
+	 *===============================================================================*/
+	public synchronized void refreshDictionaries(String threadStamp) throws Exception {
 		
-		keywordFilter.initialize(threadStamp, matchThreshold, false);
+		if (!initialized) { throw new Exception("filters not initialized"); }
 		
-		queryFilter.initialize(threadStamp, false);	
+		HashMap<String, Integer> combIdMap = loadDictionaries(threadStamp, 
+				genericNamesFilter.active, productsFilter.active, conditionsFilter.active, 
+				queryFilter.active);
 		
-		initialized = true;
+		DictionarySnapshot snapshot = buildSnapshot(threadStamp, combIdMap);
+		publishSnapshot(threadStamp, snapshot);
+		saveSnapshot(threadStamp, snapshot);
+	}
+	/*================================================================================
+	 * mapSnapshot/saveSnapshot: read and write the compiled dictionaries at 
+	 * snapshotPath. failures are reported but never prevent startup or a refresh, since
+	 * the database remains the source of truth.
+	 *===============================================================================*/
+	protected DictionarySnapshot mapSnapshot(String threadStamp) {
+		if (snapshotPath == null) { return null; }
+		try {
+			DictionarySnapshot mapped = DictionarySnapshotFile.map(snapshotPath, matchMode);
+			if (mapped == null) {
+				printToConsole(threadStamp, "no usable dictionary snapshot at " + snapshotPath);
+			} else {
+				printToConsole(threadStamp, "dictionary snapshot mapped from " + snapshotPath);
+			}
+			return mapped;
+		} catch (Exception e) {
+			printToConsole(threadStamp, "dictionary snapshot exception: " + e.getMessage());
+			return null;
+		}
+	}
+	protected void saveSnapshot(String threadStamp, DictionarySnapshot snapshot) {
+		if (snapshotPath == null) { return; }
+		try {
+			DictionarySnapshotFile.write(snapshot, matchMode, snapshotPath);
+			printToConsole(threadStamp, "dictionary snapshot written to " + snapshotPath);
+		} catch (Exception e) {
+			printToConsole(threadStamp, "dictionary snapshot exception: " + e.getMessage());
+		}
+	}
+	/*================================================================================
+	 * loadDictionaries: loads the database dictionaries concurrently, one query per
+	 * thread. each filter fills its own maps, including a separate combination id map
+	 * for generic names and products; these are merged once all loads are complete,
+	 * with product ids taking precedence as before. returns the merged combination ids.
+	 *===============================================================================*/
+	protected HashMap<String, Integer> loadDictionaries(final String threadStamp, 
+	final boolean generic, final boolean products, final boolean conditions, 
+	final boolean queries) throws Exception {
+		
+		long startTime = System.currentTimeMillis();
+		
+		final HashMap<String, Integer> genCombIdMap = new HashMap<String,Integer>();
+		final HashMap<String, Integer> prodCombIdMap = new HashMap<String,Integer>();
+		
+		List<Callable<Void>> loads = new ArrayList<Callable<Void>>();
+		loads.add(() -> { genericNamesFilter.initialize(threadStamp, genCombIdMap, generic); 
+				return null; });
+		loads.add(() -> { productsFilter.initialize(threadStamp, prodCombIdMap, products); 
+				return null; });
+		loads.add(() -> { conditionsFilter.initialize(threadStamp, conditions); return null; });
+		loads.add(() -> { queryFilter.initialize(threadStamp, queries); return null; });
+		
+		ExecutorService pool = Executors.newFixedThreadPool(loads.size());
+		try {
+			for (Future<Void> f: pool.invokeAll(loads)) {
+				try { f.get(); }
+				catch (ExecutionException e) {
+					throw new Exception("dictionary load failed: " + e.getCause().getMessage(), 
+							e.getCause());
+				}
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+		
+		HashMap<String, Integer> combIdMap = new HashMap<String,Integer>(genCombIdMap);
+		combIdMap.putAll(prodCombIdMap);
+		combinationFilter.initialize(threadStamp, combIdMap, generic || products);
+		
+		printToConsole(threadStamp, "dictionaries loaded (" + 
+				(System.currentTimeMillis() - startTime) + " mls)");
+		return combIdMap;
+	}
+	/*================================================================================
+	 * publishSnapshot: makes a snapshot current, reporting what changed.
+	 *===============================================================================*/
+	protected void publishSnapshot(String threadStamp, DictionarySnapshot snapshot) {
+		DictionarySnapshot previous = dictionary.getAndSet(snapshot);
+		printToConsole(threadStamp, "dictionaries published: " + snapshot.symbols.countEntries() + 
+				" entries (+" + snapshot.countAdded(previous) + ", -" + 
+				snapshot.countRemoved(previous) + "), built in " + snapshot.buildTimeMillis + 
+				" mls");
 	}
 	/*================================================================================
 	 * checkRelevantArticle: checks whether or not article is desired/relevant. If
@@ -68,82 +209,219 @@ public class FilterOperator {
 	 *===============================================================================*/
 	public boolean checkRelevantArticle(String threadStamp, MoreoverArticle article) 
 	throws Exception {		
+		return checkSourceRelevance(article) && checkContentRelevance(threadStamp, article);
+	}
+	/*================================================================================
+	 * checkSourceRelevance: first phase of checkRelevantArticle. only reads the source
+	 * category and editorial rank, so it can be run before the rest of the article is
+	 * extracted.
+	 *===============================================================================*/
+	public boolean checkSourceRelevance(MoreoverArticle article) throws Exception {
 		
 		if (!initialized) { throw new Exception("filters not initialized"); }
 		
 		//FILTER 1: check that the article source is relevant.
 		if (!categoryFilter.relevanceCheck(article)) { return false; }
 				
-		if (!editorialRankFilter.relevanceCheck(article)) { return false; }
+		return editorialRankFilter.relevanceCheck(article);
+	}
+	/*================================================================================
+	 * checkContentRelevance: second phase of checkRelevantArticle, for articles that
+	 * passed checkSourceRelevance. reads the title and content.
+	 *===============================================================================*/
+	public boolean checkContentRelevance(String threadStamp, MoreoverArticle article) 
+	throws Exception {
+		
+		if (!initialized) { throw new Exception("filters not initialized"); }
 						
 		//FILTER 2: horizontal keyword search.
 		if (!keywordFilter.relevanceCheck(article)) { return false; }
 		
-		//FILTER 3: do a cursory check to determine whether or not the article has drug information		
-		if (queryFilter.relevanceCheck(article)) { return true; }
+		//FILTER 3: full match pass. the results are stored on the article, so the writer
+		//only needs to build relation rows from them.
+		populateRelevantArticle(article);
+		
+		if (article.drugsFound.length == 0) { return false; }
+		
+		article.declareRelevant(article.firstDrugFound);
+		return true;	
+	}
+	/*================================================================================
+	 * buildSnapshot: interns the names of all active dictionary filters into a single
+	 * symbol table, and compiles them into a single matcher, so that each article is
+	 * scanned once regardless of dictionary size. the matcher type depends on matchMode.
+	 * the filters' own copies of the names are cleared afterwards, so only the snapshot
+	 * is kept in memory.
+	 *===============================================================================*/
+	protected DictionarySnapshot buildSnapshot(String threadStamp, 
+	Map<String,Integer> combIdMap) throws Exception {
+		try {
+			return compileSnapshot(threadStamp, combIdMap);
+		} finally {
+			queryFilter.clear();
+			genericNamesFilter.clear();
+			productsFilter.clear();
+			conditionsFilter.clear();
+		}
+	}
+	protected DictionarySnapshot compileSnapshot(String threadStamp, 
+	Map<String,Integer> combIdMap) throws Exception {
+		
+		long startTime = System.currentTimeMillis();
 		
-		if (genericNamesFilter.relevanceCheck(article)) { return true; }
+		SymbolTable symbols = new SymbolTable();
+		if (queryFilter.active) {
+			addSymbols(symbols, queryFilter.getMap(), SymbolTable.SOURCE_QUERY);
+		}
+		if (genericNamesFilter.active) {
+			addSymbols(symbols, genericNamesFilter.getMap(), SymbolTable.SOURCE_GENERIC);
+		}
+		if (productsFilter.active) {
+			addSymbols(symbols, productsFilter.getMap(), SymbolTable.SOURCE_PRODUCT);
+		}
+		if (conditionsFilter.active) {
+			addSymbols(symbols, conditionsFilter.getMap(), SymbolTable.SOURCE_CONDITION);
+		}
+		for (Map.Entry<String,Integer> e: combIdMap.entrySet()) {
+			symbols.setCombinationId(e.getKey(), e.getValue());
+		}
 		
-		if (productsFilter.relevanceCheck(article)) { return true; }
+		//the substring matcher is keyed by normalized name, the whole word matcher by 
+		//each original spelling.
+		DictionaryMatcher m;
+		if (matchMode == MATCH_WORD) {
+			TokenShingleMatcher tm = new TokenShingleMatcher();
+			List<Map<String,String>> spellings = new ArrayList<Map<String,String>>();
+			if (queryFilter.active) { spellings.add(queryFilter.getSpellings()); }
+			if (genericNamesFilter.active) { spellings.add(genericNamesFilter.getSpellings()); }
+			if (productsFilter.active) { spellings.add(productsFilter.getSpellings()); }
+			if (conditionsFilter.active) { spellings.add(conditionsFilter.getSpellings()); }
+			for (Map<String,String> map: spellings) {
+				for (Map.Entry<String,String> e: map.entrySet()) {
+					int symbol = symbols.symbol(e.getValue());
+					if (symbol != SymbolTable.NONE) { tm.addEntry(e.getKey(), symbol); }
+				}
+			}
+			m = tm;
+		} else {
+			AhoCorasickMatcher am = new AhoCorasickMatcher();
+			for (int s = 0; s < symbols.size(); s++) {
+				am.addEntry(symbols.buildName(s), s);
+			}
+			m = am;
+		}
+		symbols.compile();
+		m.compile();
 		
-		return false;	
+		printToConsole(threadStamp, "matcher compiled with " + m.size() + " patterns, " + 
+				symbols.size() + " symbols (mode " + matchMode + ")");
+		return new DictionarySnapshot(symbols, m, System.currentTimeMillis() - startTime);
+	}
+	/*================================================================================
+	 * addSymbols: adds a dictionary's names and ids to the symbol table.
+	 *===============================================================================*/
+	protected static void addSymbols(SymbolTable symbols, Map<String,Integer> queryMap, 
+	int source) throws Exception {
+		for (Map.Entry<String,Integer> e: queryMap.entrySet()) {
+			symbols.add(e.getKey(), source, e.getValue());
+		}
 	}
-	
 	/*================================================================================
-	 * initRelationsRows: intializes a database relation row
+	 * initRelationsRows: intializes the database relation rows for an article, using the
+	 * match results stored on it by populateRelevantArticle. one row is created for each
+	 * drug name (holding every dictionary id that name matched) and each condition.
 	 *===============================================================================*/
 	public List<document_relation_row> initRelationsRows(MoreoverArticle article) 
 	throws Exception {
 		
 		if (!initialized) { throw new Exception("filters not initialized"); }
+		if (article.symbolTable == null) { throw new Exception("article not populated"); }
 		
+		SymbolTable symbols = article.symbolTable;
 		List<document_relation_row> relations = new Vector<document_relation_row>();
-		for (String s: article.drugsFound) {
+		for (int s: article.drugsFound) {
 			document_relation_row docRel = new document_relation_row();
-			
-			queryFilter.populateRelation(s, docRel);
-			
-			genericNamesFilter.populateRelation(s, docRel);
-			
-			productsFilter.populateRelation(s, docRel);
-			
-			combinationFilter.populateRelation(s, docRel);
-			
+			docRel.query_id = getId(symbols, SymbolTable.SOURCE_QUERY, s);
+			docRel.generic_name_id = getId(symbols, SymbolTable.SOURCE_GENERIC, s);
+			docRel.product_id = getId(symbols, SymbolTable.SOURCE_PRODUCT, s);
+			if (combinationFilter.active) { 
+				docRel.combination_id = getId(symbols, SymbolTable.COMBINATION, s);
+			}
 			relations.add(docRel);
 		}
-		for (String s: article.conditionsFound) {
+		for (int s: article.conditionsFound) {
 			document_relation_row docRel = new document_relation_row();
-			
-			conditionsFilter.populateRelation(s, docRel);
-			
+			docRel.condition_id = getId(symbols, SymbolTable.SOURCE_CONDITION, s);
 			relations.add(docRel);
 		}
 		return relations;
 	}
 	/*================================================================================
-	 * populateRelevantArticle: uses filters to populate article with relevant data
-	 * that isn't already included.
+	 * getId: returns a symbol's id in the given column, or null if it has none.
+	 *===============================================================================*/
+	protected static Integer getId(SymbolTable symbols, int column, int symbol) {
+		int id = symbols.id(column, symbol);
+		return id == SymbolTable.NONE ? null : id;
+	}
+	/*================================================================================
+	 * populateRelevantArticle: scans the article once against all dictionaries, and 
+	 * stores the complete result on it: the drug and condition symbols found (title 
+	 * first, then content), the symbol table they refer to, the title/content relevance
+	 * value and the first drug found.
 	 *===============================================================================*/
 	public void populateRelevantArticle(MoreoverArticle article) throws Exception {
 		
 		if (!initialized) { throw new Exception("filters not initialized"); }
 		
-		Set<String> namesFound = new HashSet<String>();
-		Set<String> conditionsFound = new HashSet<String>();
-		
-		queryFilter.populateArticle(article, namesFound);
-		
-		String genRelevanceValue = genericNamesFilter.populateArticle(article, namesFound);
+		//single pass over each of title and content, covering every dictionary. the 
+		//snapshot is read once, so both passes and the stored symbols agree.
+		DictionarySnapshot snapshot = dictionary.get();
+		SymbolTable symbols = snapshot.symbols;
+		BitSet titleSymbols = new BitSet(symbols.size());
+		BitSet contentSymbols = new BitSet(symbols.size());
+		snapshot.matcher.match(article, true, titleSymbols);
+		snapshot.matcher.match(article, false, contentSymbols);
 		
-		String prodRelevanceValue = productsFilter.populateArticle(article, namesFound);
+		String titleRelevanceValue = null;
+		String contentRelevanceValue = null;
+		if (countsTowardsRelevance(symbols, titleSymbols)) {
+			titleRelevanceValue = MoreoverArticle.RELEVANCY_TITLE_VAL;
+		}
+		if (countsTowardsRelevance(symbols, contentSymbols)) {
+			contentRelevanceValue = MoreoverArticle.RELEVANCY_CONTENT_VAL;
+		}
 		
-		conditionsFilter.populateArticle(article, conditionsFound);		
+		contentSymbols.andNot(titleSymbols);
+		int[] drugsFound = new int[titleSymbols.cardinality() + contentSymbols.cardinality()];
+		int[] conditionsFound = new int[drugsFound.length];
+		int drugCount = 0;
+		int conditionCount = 0;
+		for (BitSet found: new BitSet[] { titleSymbols, contentSymbols }) {
+			for (int s = found.nextSetBit(0); s >= 0; s = found.nextSetBit(s + 1)) {
+				if (symbols.isDrug(s)) { drugsFound[drugCount++] = s; }
+				if (symbols.isCondition(s)) { conditionsFound[conditionCount++] = s; }
+			}
+		}
 		
-		article.drugsFound = namesFound;
-		article.relevanceValue = getRelevanceValue(genRelevanceValue, prodRelevanceValue);
-		article.conditionsFound = conditionsFound;
+		article.symbolTable = symbols;
+		article.drugsFound = Arrays.copyOf(drugsFound, drugCount);
+		article.relevanceValue = getRelevanceValue(titleRelevanceValue, contentRelevanceValue);
+		article.conditionsFound = Arrays.copyOf(conditionsFound, conditionCount);
+		article.firstDrugFound = drugCount == 0 ? null : symbols.name(drugsFound[0]);
 		
 	}
+	/*================================================================================
+	 * countsTowardsRelevance: true if any symbol found is a generic or product name.
+	 *===============================================================================*/
+	protected static boolean countsTowardsRelevance(SymbolTable symbols, BitSet found) {
+		for (int s = found.nextSetBit(0); s >= 0; s = found.nextSetBit(s + 1)) {
+			if (symbols.id(SymbolTable.SOURCE_GENERIC, s) != SymbolTable.NONE || 
+					symbols.id(SymbolTable.SOURCE_PRODUCT, s) != SymbolTable.NONE) {
+				return true;
+			}
+		}
+		return false;
+	}
 	/*================================================================================
 	 * printToConsole: prints a string to the console, including thread identification
 	 *===============================================================================*/
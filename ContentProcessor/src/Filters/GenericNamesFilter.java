@@ -2,12 +2,9 @@ package Filters;
 
 import java.sql.ResultSet;
 import java.util.HashMap;
-import java.util.Set;
 
-import dbconnect.general.document_relation_row;
 import dbconnect.main.DBConnect;
 import main.Main;
-import main.MoreoverArticle;
 
 /*================================================================================
  * GenericNamesFilter
@@ -16,7 +13,8 @@ import main.MoreoverArticle;
  *===============================================================================*/
 public final class GenericNamesFilter extends Filter {
 
-	private static HashMap<String,Integer> queryMap;
+	private HashMap<String,Integer> queryMap;
+	private HashMap<String,String> spellingMap;
 	public static final String GEN_LIST_QUERY = "select distinct d.name, d.combination_id, d.id "
 			+ "from product b, combination c, generic_name d "
 			+ "where b.type != 'HUMAN OTC DRUG' "
@@ -38,28 +36,34 @@ public final class GenericNamesFilter extends Filter {
 		long startTime = System.currentTimeMillis();
 		
 		HashMap<String,Integer> genMap = new HashMap<String,Integer>();
+		HashMap<String,String> spellings = new HashMap<String,String>();
 		
-		DBConnect con = new DBConnect();
-		Main.connectToDatabase(con);
-		ResultSet rsGen = con.ExecuteQuery(GEN_LIST_QUERY);
-		con.CommitClose();	
+		DBConnect con = Main.dbPool.borrow();
 		
 		//constuct string list from result set
-		while (rsGen.next()) {
-			String temp_drugname =  rsGen.getString("name");
-			if (temp_drugname == null) {
-				throw new Exception("null drugname found");
-			} else {
-				temp_drugname = temp_drugname.toLowerCase().replaceAll("[^a-zA-Z0-9]", "").trim();
+		try {
+			ResultSet rsGen = con.ExecuteQuery(GEN_LIST_QUERY);
+			while (rsGen.next()) {
+				String temp_drugname =  rsGen.getString("name");
+				if (temp_drugname == null) {
+					throw new Exception("null drugname found");
+				} else {
+					String spelling = temp_drugname.trim();
+					temp_drugname = temp_drugname.toLowerCase().replaceAll("[^a-zA-Z0-9]", "").trim();
+					spellings.put(spelling, temp_drugname);
+				}
+				genMap.put(temp_drugname, rsGen.getInt("id"));
+				combIdMap.put(temp_drugname, rsGen.getInt("combination_id"));
 			}
-			genMap.put(temp_drugname, rsGen.getInt("id"));
-			combIdMap.put(temp_drugname, rsGen.getInt("combination_id"));
+		} finally {
+			Main.dbPool.release(con);
 		}
 		
-		printToConsole(threadStamp, "read " + genMap.size() + " generic names");			
-		printToConsole(threadStamp, "run time:  " + ((System.currentTimeMillis() - startTime)/1000) + " sec");	
+		printToConsole(threadStamp, "read " + genMap.size() + " generic names (" + 
+				(System.currentTimeMillis() - startTime) + " mls)");
 		
 		queryMap = genMap;
+		spellingMap = spellings;
 		
 	}
 
@@ -68,42 +72,22 @@ public final class GenericNamesFilter extends Filter {
 		else return queryMap;
 	}
 	
-	@Override
-	public boolean relevanceCheck(MoreoverArticle article) throws Exception {
-		
-		if (!active) { return false; }
-		
-		for (String drug: queryMap.keySet()) {
-			if (doesMatch(article.title, drug) || doesMatch(article.content, drug)){
-				article.declareRelevant(drug);
-				return true;
-			}
-		}
-		return false;
-	}
-
-	@Override
-	public String populateArticle(MoreoverArticle article, Set<String> queriesFound) throws Exception {
-		
-		if (!active) { return null; }
-		
-		String relevanceValue = null;
-		for (String q: queryMap.keySet()) {
-			if (doesMatch(article.title, q)) {
-				queriesFound.add(q);
-				relevanceValue = MoreoverArticle.RELEVANCY_TITLE_VAL;
-			} else if (doesMatch(article.content, q)) {
-				queriesFound.add(q);
-				if (relevanceValue == null) { relevanceValue = MoreoverArticle.RELEVANCY_CONTENT_VAL; }
-			}
-		}
-		return relevanceValue;
+	
+	/*================================================================================
+	 * getSpellings: original (trimmed) spelling of each name, mapped to its normalized
+	 * key in the query map. used to build the whole word matcher.
+	 *===============================================================================*/
+	public HashMap<String,String> getSpellings() {
+		return spellingMap;
 	}
-
+	
+	/*================================================================================
+	 * clear: drops the names once the dictionary snapshot is built.
+	 *===============================================================================*/
 	@Override
-	public void populateRelation(String query, document_relation_row relation) throws Exception {
-		if (!active) { return; }
-		relation.generic_name_id = queryMap.get(query);
+	public void clear() {
+		queryMap = null;
+		spellingMap = null;
 	}
 
 }
@@ -1,81 +1,102 @@
 package Filters;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileReader;
+import java.util.BitSet;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 import java.util.Vector;
 
-import dbconnect.general.document_relation_row;
 import main.MoreoverArticle;
 
+/*================================================================================
+ *KeywordFilter
+ *
+ *horizontal prefilter: an article passes if at least matchThreshold distinct keywords
+ *appear in its normalized title or content. the keyword list is read from a file
+ *(one keyword per line) and compiled into a single AhoCorasickMatcher, so each article
+ *is scanned once, stopping as soon as the threshold is reached.
+ *===============================================================================*/
 public class KeywordFilter extends Filter {
 
 	public static List<String> keywordList;
 	public static int matchThreshold = 3;
-	public static final String FILEPATH = "/Users/nikhildasgupta/Desktop/Work/KnowYourMeds/"
-			+ "runtime_ref_files/medicalKeyWordList.txt";
+	
+	private AhoCorasickMatcher keywordMatcher;
+	
+	//keywords found in the article being checked, reused by each reader thread.
+	private static final ThreadLocal<BitSet> keywordsFound = new ThreadLocal<BitSet>() {
+		@Override
+		protected BitSet initialValue() { return new BitSet(); }
+	};
 	
 	@Override
 	public void initialize(String threadStamp, boolean active) throws Exception {
 		this.active = initializeSpecific(threadStamp, active);	
 	}
-
-	public void initialize(String threadStamp, int matchThreshold, boolean active) throws Exception {
-		//TODO: if the file is empty, return zero size list. if this is the case, ignore this
-		//part of the filtering process, and let all files through.
+	/*================================================================================
+	 * initialize: reads the keyword list at 'path' and compiles it. if there is no file
+	 * at 'path', or it holds no usable keywords, every article passes this filter.
+	 *===============================================================================*/
+	public void initialize(String threadStamp, String path, int matchThreshold, 
+	boolean active) throws Exception {
 		
 		this.active = active;
 		if (!active) { return; }
 		
 		KeywordFilter.matchThreshold = matchThreshold;
 		keywordList =  new Vector<String>();	
+		keywordMatcher = new AhoCorasickMatcher();
 		
-		FileReader fileReader = new FileReader(FILEPATH);
-		BufferedReader bufferedReader = new BufferedReader(fileReader);
-		String line;
-		
-		while ((line = bufferedReader.readLine()) != null) {
-			keywordList.add(line);
+		if (path == null || !new File(path).isFile()) {
+			printToConsole(threadStamp, "no keyword list at " + path + 
+					". keyword filter passes all articles");
+			keywordMatcher.compile();
+			return;
 		}
 		
-		fileReader.close();
+		FileReader fileReader = new FileReader(path);
+		BufferedReader bufferedReader = new BufferedReader(fileReader);
+		String line;
+		HashSet<String> seen = new HashSet<String>();
 		
-		for (String s: keywordList) {
-			System.out.println(s);
+		//keywords are stored normalized, in the same form as the article view. keywords
+		//too short to match reliably are skipped, as for dictionary names.
+		try {
+			while ((line = bufferedReader.readLine()) != null) {
+				String keyword = new String(normalize(line));
+				if (keyword.length() <= MIN_NAME_LENGTH || !seen.add(keyword)) { 
+					continue; 
+				}
+				keywordMatcher.addEntry(keyword, keywordList.size());
+				keywordList.add(keyword);
+			}
+		} finally {
+			fileReader.close();
 		}
-	
+		keywordMatcher.compile();
 		
+		printToConsole(threadStamp, "read " + keywordList.size() + " keywords from " + 
+				path + " (threshold " + matchThreshold + ")");
 	}
 	
-	@Override
+	/*================================================================================
+	 * relevanceCheck: true if enough keywords appear in the article
+	 *===============================================================================*/
 	public boolean relevanceCheck(MoreoverArticle article) throws Exception {
 		
-		if (!active) { return true; }
+		if (!active || keywordList.isEmpty()) { return true; }
 		
-		int keyWordMatchCount = 0;
-		for (String keyWord: keywordList) {
-			if (keyWordMatchCount >= matchThreshold) { break; }
-			if (doesMatch(article.title, keyWord) || doesMatch(article.content, keyWord)){
-				keyWordMatchCount++;
-				continue;
-			}
-		}
-		if ((keyWordMatchCount < matchThreshold) && keywordList.size() > 0) {
-			return false;
+		//a keyword counts once, whether found in the title, the content or both.
+		BitSet found = keywordsFound.get();
+		found.clear();
+		if (keywordMatcher.match(article.getNormalizedTitle(), 
+				article.getNormalizedTitleLength(), found, matchThreshold) >= matchThreshold) {
+			return true;
 		}
-		return true;
-	}
-
-	@Override
-	public String populateArticle(MoreoverArticle article, Set<String> queriesFound) throws Exception {
-		// TODO Auto-generated method stub
-		return null;
-	}
-
-	@Override
-	public void populateRelation(String query, document_relation_row relation) throws Exception {
-		// TODO Auto-generated method stub
+		return keywordMatcher.match(article.getNormalizedContent(), 
+				article.getNormalizedContentLength(), found, matchThreshold) >= matchThreshold;
 	}
 
 }
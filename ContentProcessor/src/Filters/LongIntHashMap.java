@@ -0,0 +1,117 @@
+package Filters;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+
+/*================================================================================
+ * LongIntHashMap
+ *
+ * open addressing hash map from primitive long keys to primitive int values, with
+ * linear probing. used for hashed dictionary lookups, where a HashMap<Long,Integer>
+ * would box every probe. not thread safe for writes; safe for concurrent reads once
+ * fully populated and published. a map read from a snapshot file is read only.
+ *===============================================================================*/
+public class LongIntHashMap {
+
+	private static final int MIN_CAPACITY = 16;
+
+	//key 0 marks an empty slot, so it is stored separately
+	private LongBuffer keys;
+	private IntBuffer values;
+	private boolean hasZeroKey = false;
+	private int zeroValue;
+	private int size = 0;
+	private int mask;
+
+	public LongIntHashMap() {
+		this(MIN_CAPACITY);
+	}
+
+	public LongIntHashMap(int expectedSize) {
+		int capacity = MIN_CAPACITY;
+		while (capacity < expectedSize * 2) { capacity <<= 1; }
+		keys = LongBuffer.wrap(new long[capacity]);
+		values = IntBuffer.wrap(new int[capacity]);
+		mask = capacity - 1;
+	}
+	/*================================================================================
+	 * LongIntHashMap: maps a read only table from a snapshot file.
+	 *===============================================================================*/
+	public LongIntHashMap(ByteBuffer in) {
+		hasZeroKey = in.getInt() != 0;
+		zeroValue = in.getInt();
+		size = in.getInt();
+		keys = DictionarySnapshotFile.mapLongs(in);
+		values = DictionarySnapshotFile.mapInts(in);
+		mask = keys.limit() - 1;
+	}
+	/*================================================================================
+	 * write: writes the table to a snapshot file.
+	 *===============================================================================*/
+	public void write(DataOutputStream out) throws IOException {
+		out.writeInt(hasZeroKey ? 1 : 0);
+		out.writeInt(zeroValue);
+		out.writeInt(size);
+		DictionarySnapshotFile.writeLongs(out, keys);
+		DictionarySnapshotFile.writeInts(out, values);
+	}
+
+	/*================================================================================
+	 * get: returns the value for the key, or 'missing' if the key is absent.
+	 *===============================================================================*/
+	public int get(long key, int missing) {
+		if (key == 0) { return hasZeroKey ? zeroValue : missing; }
+		for (int i = slot(key); ; i = (i + 1) & mask) {
+			long k = keys.get(i);
+			if (k == key) { return values.get(i); }
+			if (k == 0) { return missing; }
+		}
+	}
+	/*================================================================================
+	 * put: associates the value with the key, replacing any previous value.
+	 *===============================================================================*/
+	public void put(long key, int value) {
+		if (key == 0) {
+			if (!hasZeroKey) { size++; }
+			hasZeroKey = true;
+			zeroValue = value;
+			return;
+		}
+		int i = slot(key);
+		while (keys.get(i) != 0 && keys.get(i) != key) { i = (i + 1) & mask; }
+		if (keys.get(i) == 0) {
+			keys.put(i, key);
+			size++;
+		}
+		values.put(i, value);
+		if (size * 2 > keys.limit()) { resize(); }
+	}
+
+	public int size() {
+		return size;
+	}
+
+	private int slot(long key) {
+		return (int) (key ^ (key >>> 32)) & mask;
+	}
+
+	private void resize() {
+		LongBuffer oldKeys = keys;
+		IntBuffer oldValues = values;
+		keys = LongBuffer.wrap(new long[oldKeys.limit() * 2]);
+		values = IntBuffer.wrap(new int[oldValues.limit() * 2]);
+		mask = keys.limit() - 1;
+		for (int i = 0; i < oldKeys.limit(); i++) {
+			long k = oldKeys.get(i);
+			if (k == 0) { continue; }
+			int j = slot(k);
+			while (keys.get(j) != 0) { j = (j + 1) & mask; }
+			keys.put(j, k);
+			values.put(j, oldValues.get(i));
+		}
+	}
+
+}
@@ -4,17 +4,15 @@ import java.sql.ResultSet;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Set;
 
-import dbconnect.general.document_relation_row;
 import dbconnect.general.product_statements;
 import dbconnect.main.DBConnect;
 import main.Main;
-import main.MoreoverArticle;
 
 public class ProductsFilter extends Filter {
 	
-	private static HashMap<String,Integer> queryMap;
+	private HashMap<String,Integer> queryMap;
+	private HashMap<String,String> spellingMap;
 	
 	@Override
 	public void initialize(String threadStamp, boolean active) throws Exception {
@@ -29,87 +27,72 @@ public class ProductsFilter extends Filter {
 		
 		long startTime = System.currentTimeMillis();
 		HashMap<String,Integer> prodMap = new HashMap<String,Integer>();
+		HashMap<String,String> spellings = new HashMap<String,String>();
 
 		//intialize statement
 		String selectQueryProd = product_statements.Select(new ArrayList<>(
 				Arrays.asList("name","id","combination_id","type")));
 		
 		//connect and execute statement/retreive data
-		DBConnect con = new DBConnect();
-		Main.connectToDatabase(con);
-		ResultSet rsProd = con.ExecuteQuery(selectQueryProd);
-		con.CommitClose();	
+		DBConnect con = Main.dbPool.borrow();
 		
 		//iterate through result list and put entries into product map.
-		while (rsProd.next()) {
-			String temp_drugname =  rsProd.getString("name");
+		try {
+			ResultSet rsProd = con.ExecuteQuery(selectQueryProd);
+			while (rsProd.next()) {
+				String temp_drugname =  rsProd.getString("name");
 			
-			//apply all rules, so only the desired names are stored
-			if (temp_drugname == null) {
-				throw new Exception("null drugname found");
-			} 
+				//apply all rules, so only the desired names are stored
+				if (temp_drugname == null) {
+					throw new Exception("null drugname found");
+				} 
 			
-			//filter by type
-			if (!(rsProd.getString("type").trim().equalsIgnoreCase("HUMAN PRESCRIPTION DRUG"))) {
-				continue;
-			}
+				//filter by type
+				if (!(rsProd.getString("type").trim().equalsIgnoreCase("HUMAN PRESCRIPTION DRUG"))) {
+					continue;
+				}
 			
-			temp_drugname = temp_drugname.toLowerCase().replaceAll("[^a-zA-Z0-9]", "").trim();
+				String spelling = temp_drugname.trim();
+				temp_drugname = temp_drugname.toLowerCase().replaceAll("[^a-zA-Z0-9]", "").trim();
 			
-			//store in map.
-			prodMap.put(temp_drugname, rsProd.getInt("id")); 
-			combIdMap.put(temp_drugname, rsProd.getInt("combination_id"));	
+				//store in map.
+				prodMap.put(temp_drugname, rsProd.getInt("id")); 
+				spellings.put(spelling, temp_drugname);
+				combIdMap.put(temp_drugname, rsProd.getInt("combination_id"));	
+			}
+		} finally {
+			Main.dbPool.release(con);
 		}
 		
-		printToConsole(threadStamp, "read " + prodMap.size() + " product names");			
-		printToConsole(threadStamp, "run time:  " + 
-				((System.currentTimeMillis() - startTime)/1000) + " sec");	
+		printToConsole(threadStamp, "read " + prodMap.size() + " product names (" + 
+				(System.currentTimeMillis() - startTime) + " mls)");
 		
 		
 		queryMap = prodMap;
+		spellingMap = spellings;
 		
 	}
 	
-	@Override
-	public boolean relevanceCheck(MoreoverArticle article) throws Exception {
-		
-		if (!active) { return false; }
-		
-		for (String q: queryMap.keySet()) {
-			if (doesMatch(article.title, q) || doesMatch(article.content, q)){
-				article.declareRelevant(q);
-				return true;
-			}
-		}
-		return false;
-	}
-
-	@Override
-	public String populateArticle(MoreoverArticle article, Set<String> queriesFound) throws Exception {
-		
-		if (!active) { return null; }
-		
-		String relevanceValue = null;
-		for (String q: queryMap.keySet()) {
-			if (doesMatch(article.title, q)) {
-				queriesFound.add(q);
-				relevanceValue = MoreoverArticle.RELEVANCY_TITLE_VAL;
-			} else if (doesMatch(article.content, q)) {
-				queriesFound.add(q);
-				if (relevanceValue == null) { relevanceValue = MoreoverArticle.RELEVANCY_CONTENT_VAL; }
-			}
-		}
-		return relevanceValue;
-	}
-
-	@Override
-	public void populateRelation(String query, document_relation_row relation) throws Exception {
-		if (!active) { return; }
-		relation.product_id = queryMap.get(query);
-	}
 	
 	public HashMap<String,Integer> getMap() {
 		return queryMap;
 	}
+	
+	/*================================================================================
+	 * getSpellings: original (trimmed) spelling of each name, mapped to its normalized
+	 * key in the query map. used to build the whole word matcher.
+	 *===============================================================================*/
+	public HashMap<String,String> getSpellings() {
+		return spellingMap;
+	}
+	
+	/*================================================================================
+	 * clear: drops the names once the dictionary snapshot is built.
+	 *===============================================================================*/
+	@Override
+	public void clear() {
+		queryMap = null;
+		spellingMap = null;
+	}
 
 }
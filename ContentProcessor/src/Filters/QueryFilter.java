@@ -4,17 +4,15 @@ import java.sql.ResultSet;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Set;
 
-import dbconnect.general.document_relation_row;
 import dbconnect.general.moreover_query_statements;
 import dbconnect.main.DBConnect;
 import main.Main;
-import main.MoreoverArticle;
 
 public class QueryFilter extends Filter {
 
-	private static HashMap<String,Integer> queryMap;
+	private HashMap<String,Integer> queryMap;
+	private HashMap<String,String> spellingMap;
 	
 	@Override
 	public void initialize(String threadStamp, boolean active) throws Exception {
@@ -25,74 +23,58 @@ public class QueryFilter extends Filter {
 		long startTime = System.currentTimeMillis();
 		
 		HashMap<String,Integer> returnMap = new HashMap<String,Integer>();
+		HashMap<String,String> spellings = new HashMap<String,String>();
 		
 		//intialize statement
 		String selectQueryProd = moreover_query_statements.Select(new ArrayList<>(
 						Arrays.asList("id","query")));
 		
-		DBConnect con = new DBConnect();
-		Main.connectToDatabase(con);
-		ResultSet rs = con.ExecuteQuery(selectQueryProd);
-		con.CommitClose();	
+		DBConnect con = Main.dbPool.borrow();
 		
 		//constuct string list from result set
-		while (rs.next()) {
-			String temp =  rs.getString("query");
-			if (temp == null) {
-				throw new Exception("null drugname found");
-			} else {
-				temp = temp.toLowerCase().replaceAll("[^a-zA-Z0-9]", "").trim();
+		try {
+			ResultSet rs = con.ExecuteQuery(selectQueryProd);
+			while (rs.next()) {
+				String temp =  rs.getString("query");
+				if (temp == null) {
+					throw new Exception("null drugname found");
+				} else {
+					String spelling = temp.trim();
+					temp = temp.toLowerCase().replaceAll("[^a-zA-Z0-9]", "").trim();
+					spellings.put(spelling, temp);
+				}
+				returnMap.put(temp, rs.getInt("id"));
 			}
-			returnMap.put(temp, rs.getInt("id"));
+		} finally {
+			Main.dbPool.release(con);
 		}
 		
-		printToConsole(threadStamp, "read " + returnMap.size() + " queries");			
-		printToConsole(threadStamp, "run time:  " + 
-				((System.currentTimeMillis() - startTime)/1000) + " sec");	
+		printToConsole(threadStamp, "read " + returnMap.size() + " queries (" + 
+				(System.currentTimeMillis() - startTime) + " mls)");
 		
 		queryMap = returnMap;
-	}
-
-	@Override
-	public boolean relevanceCheck(MoreoverArticle article) throws Exception {
-		
-		if (!active) { return false; }
-		
-		for (String q: queryMap.keySet()) {
-			if (doesMatch(article.title, q) || doesMatch(article.content, q)) {
-				article.declareRelevant(q);
-				return true;
-			}
-		}
-		return false;
-	}
-
-	@Override
-	public String populateArticle(MoreoverArticle article, Set<String> queriesFound) throws Exception {
-		
-		if (!active) { return null; }
-		
-		String relevanceValue = null;
-		for (String q: queryMap.keySet()) {
-			if (doesMatch(article.title, q)) {
-				queriesFound.add(q);
-				relevanceValue = MoreoverArticle.RELEVANCY_TITLE_VAL;
-			} else if (doesMatch(article.content, q)) {
-				queriesFound.add(q);
-				if (relevanceValue == null) { relevanceValue = MoreoverArticle.RELEVANCY_CONTENT_VAL; }
-			}
-		}
-		return relevanceValue;
-	}
-
-	@Override
-	public void populateRelation(String query, document_relation_row relation) throws Exception {
-		if (!active) { return; }
-		relation.query_id = queryMap.get(query);
+		spellingMap = spellings;
 	}
 	
 	public HashMap<String,Integer> getMap() {
 		return queryMap;
 	}
+	
+	/*================================================================================
+	 * getSpellings: original (trimmed) spelling of each name, mapped to its normalized
+	 * key in the query map. used to build the whole word matcher.
+	 *===============================================================================*/
+	public HashMap<String,String> getSpellings() {
+		return spellingMap;
+	}
+	
+	/*================================================================================
+	 * clear: drops the names once the dictionary snapshot is built.
+	 *===============================================================================*/
+	@Override
+	public void clear() {
+		queryMap = null;
+		spellingMap = null;
+	}
 
 }
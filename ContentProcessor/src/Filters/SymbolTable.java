@@ -0,0 +1,202 @@
+package Filters;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/*================================================================================
+ * SymbolTable
+ *
+ * interns every normalized dictionary name as a dense int symbol, shared by all
+ * dictionaries. for each symbol the table holds the name and its id in each source
+ * dictionary (query, generic name, product, condition) plus its combination id, as
+ * primitive columns; NONE where the name is not in that dictionary. the matchers
+ * report symbols, and match results are kept as symbol arrays, so no per-name maps
+ * or boxed ids are needed once the table is compiled.
+ *
+ * usage: add names while loading, compile once, then read from any number of threads.
+ * like the matchers, the compiled columns are nio buffers and can be mapped from a
+ * snapshot file (see DictionarySnapshotFile).
+ *===============================================================================*/
+public class SymbolTable {
+
+	//dictionary sources, and the column for each
+	public static final int SOURCE_QUERY = 0;
+	public static final int SOURCE_GENERIC = 1;
+	public static final int SOURCE_PRODUCT = 2;
+	public static final int SOURCE_CONDITION = 3;
+	public static final int COMBINATION = 4;
+	private static final int COLUMN_COUNT = 5;
+
+	public static final int NONE = -1;
+
+	//build state
+	private HashMap<String,Integer> buildSymbols = new HashMap<String,Integer>();
+	private List<String> buildNames = new ArrayList<String>();
+	private List<List<Integer>> buildColumns = new ArrayList<List<Integer>>();
+
+	//compiled table
+	private String[] names;
+	private IntBuffer[] columns;
+
+	private boolean compiled = false;
+
+	public SymbolTable() {
+		for (int c = 0; c < COLUMN_COUNT; c++) {
+			buildColumns.add(new ArrayList<Integer>());
+		}
+	}
+	/*================================================================================
+	 * SymbolTable: maps a compiled table from a snapshot file.
+	 *===============================================================================*/
+	public SymbolTable(ByteBuffer in) {
+		names = DictionarySnapshotFile.readStrings(in);
+		columns = new IntBuffer[COLUMN_COUNT];
+		for (int c = 0; c < COLUMN_COUNT; c++) {
+			columns[c] = DictionarySnapshotFile.mapInts(in);
+		}
+		buildSymbols = null;
+		buildNames = null;
+		buildColumns = null;
+		compiled = true;
+	}
+
+	/*================================================================================
+	 * add: records a normalized name's id in a source dictionary, and returns its
+	 * symbol. names too short to be matched reliably are skipped (see
+	 * Filter.MIN_NAME_LENGTH); NONE is returned for these.
+	 *===============================================================================*/
+	public int add(String name, int source, int id) throws Exception {
+
+		if (compiled) { throw new Exception("symbol table already compiled"); }
+		if (name == null || name.length() <= Filter.MIN_NAME_LENGTH) { return NONE; }
+
+		Integer symbol = buildSymbols.get(name);
+		if (symbol == null) {
+			symbol = buildNames.size();
+			buildSymbols.put(name, symbol);
+			buildNames.add(name);
+			for (List<Integer> column: buildColumns) {
+				column.add(NONE);
+			}
+		}
+		buildColumns.get(source).set(symbol, id);
+		return symbol;
+	}
+	/*================================================================================
+	 * setCombinationId: records the combination id of a name already in the table.
+	 *===============================================================================*/
+	public void setCombinationId(String name, int id) throws Exception {
+		int symbol = symbol(name);
+		if (symbol != NONE) {
+			buildColumns.get(COMBINATION).set(symbol, id);
+		}
+	}
+	/*================================================================================
+	 * symbol: returns the symbol of a name, or NONE. only available while building.
+	 *===============================================================================*/
+	public int symbol(String name) throws Exception {
+		if (compiled) { throw new Exception("symbol table already compiled"); }
+		Integer symbol = buildSymbols.get(name);
+		return symbol == null ? NONE : symbol;
+	}
+	/*================================================================================
+	 * buildName: returns the name of a symbol while building.
+	 *===============================================================================*/
+	public String buildName(int symbol) throws Exception {
+		if (compiled) { throw new Exception("symbol table already compiled"); }
+		return buildNames.get(symbol);
+	}
+	/*================================================================================
+	 * compile: flattens the table into its columns. must be called once, after all
+	 * names have been added and before any lookups.
+	 *===============================================================================*/
+	public void compile() throws Exception {
+
+		if (compiled) { throw new Exception("symbol table already compiled"); }
+
+		int symbolCount = buildNames.size();
+		names = buildNames.toArray(new String[symbolCount]);
+		columns = new IntBuffer[COLUMN_COUNT];
+		for (int c = 0; c < COLUMN_COUNT; c++) {
+			int[] column = new int[symbolCount];
+			for (int s = 0; s < symbolCount; s++) {
+				column[s] = buildColumns.get(c).get(s);
+			}
+			columns[c] = IntBuffer.wrap(column);
+		}
+
+		buildSymbols = null;
+		buildNames = null;
+		buildColumns = null;
+		compiled = true;
+	}
+	/*================================================================================
+	 * write: writes the compiled table to a snapshot file.
+	 *===============================================================================*/
+	public void write(DataOutputStream out) throws IOException {
+		DictionarySnapshotFile.writeStrings(out, names);
+		for (IntBuffer column: columns) {
+			DictionarySnapshotFile.writeInts(out, column);
+		}
+	}
+
+	/*================================================================================
+	 * lookups on the compiled table.
+	 *===============================================================================*/
+	public int size() {
+		return compiled ? names.length : buildNames.size();
+	}
+	public String name(int symbol) {
+		return names[symbol];
+	}
+	public int id(int column, int symbol) {
+		return columns[column].get(symbol);
+	}
+	public boolean isDrug(int symbol) {
+		return id(SOURCE_QUERY, symbol) != NONE || id(SOURCE_GENERIC, symbol) != NONE ||
+				id(SOURCE_PRODUCT, symbol) != NONE;
+	}
+	public boolean isCondition(int symbol) {
+		return id(SOURCE_CONDITION, symbol) != NONE;
+	}
+	/*================================================================================
+	 * countEntries: number of (name, source, id) entries in the table.
+	 *===============================================================================*/
+	public int countEntries() {
+		int count = 0;
+		for (int s = 0; s < names.length; s++) {
+			for (int c = SOURCE_QUERY; c <= SOURCE_CONDITION; c++) {
+				if (id(c, s) != NONE) { count++; }
+			}
+		}
+		return count;
+	}
+	/*================================================================================
+	 * countAdded: number of (name, source, id) entries in this table that are not in
+	 * 'previous'. the name index built here is only needed for reporting changes.
+	 *===============================================================================*/
+	public int countAdded(SymbolTable previous) {
+		if (previous == null) { return countEntries(); }
+
+		HashMap<String,Integer> previousSymbols = new HashMap<String,Integer>();
+		for (int s = 0; s < previous.names.length; s++) {
+			previousSymbols.put(previous.names[s], s);
+		}
+
+		int count = 0;
+		for (int s = 0; s < names.length; s++) {
+			Integer p = previousSymbols.get(names[s]);
+			for (int c = SOURCE_QUERY; c <= SOURCE_CONDITION; c++) {
+				int id = id(c, s);
+				if (id != NONE && (p == null || previous.id(c, p) != id)) { count++; }
+			}
+		}
+		return count;
+	}
+
+}
@@ -0,0 +1,117 @@
+package Filters;
+
+import java.io.DataOutputStream;
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+
+import main.MoreoverArticle;
+
+/*================================================================================
+ * TokenShingleMatcher
+ *
+ * whole word matcher. each dictionary spelling is split into tokens (runs of letters
+ * and digits) and stored as the hash of its token sequence. articles are tokenized the
+ * same way (see Filter.tokenize), and every 1 to N token shingle of the article is
+ * probed against the stored hashes, where N is the longest name in tokens. matching
+ * is O(tokens * N), independent of dictionary size, and a name never matches inside
+ * a larger word.
+ *
+ * note: 64 bit hashes are compared without verifying the text, so a collision could
+ * in principle produce a false match. at dictionary sizes in the tens of thousands
+ * this is negligible.
+ *===============================================================================*/
+public class TokenShingleMatcher extends DictionaryMatcher {
+
+	private static final long SHINGLE_SEED = 0x2545F4914F6CDD1DL;
+	private static final long SHINGLE_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+	//shingle hash -> symbol
+	private LongIntHashMap shingleMap = new LongIntHashMap();
+	private int maxTokens = 0;
+	
+	public TokenShingleMatcher() { }
+	
+	/*================================================================================
+	 * TokenShingleMatcher: maps a compiled matcher from a snapshot file, positioned
+	 * after the file header.
+	 *===============================================================================*/
+	public TokenShingleMatcher(ByteBuffer in) {
+		patternCount = in.getInt();
+		maxTokens = in.getInt();
+		shingleMap = new LongIntHashMap(in);
+		compiled = true;
+	}
+
+	/*================================================================================
+	 * addEntry: adds a dictionary spelling, reported as 'symbol'. spellings with no
+	 * tokens are skipped. returns false if so.
+	 *===============================================================================*/
+	public boolean addEntry(String spelling, int symbol) throws Exception {
+
+		if (compiled) { throw new Exception("matcher already compiled"); }
+
+		long[] tokens = Filter.tokenize(spelling, Integer.MAX_VALUE);
+		if (tokens.length == 0) { return false; }
+
+		long hash = SHINGLE_SEED;
+		for (long t: tokens) {
+			hash = shingle(hash, t);
+		}
+		if (shingleMap.get(hash, NONE) == NONE) { patternCount++; }
+		shingleMap.put(hash, symbol);
+		if (tokens.length > maxTokens) { maxTokens = tokens.length; }
+		return true;
+	}
+	/*================================================================================
+	 * compile: the shingle map is already in its final form.
+	 *===============================================================================*/
+	@Override
+	public void compile() throws Exception {
+		if (compiled) { throw new Exception("matcher already compiled"); }
+		compiled = true;
+	}
+	/*================================================================================
+	 * write: writes the pattern count followed by the shingle table.
+	 *===============================================================================*/
+	@Override
+	public void write(DataOutputStream out) throws Exception {
+		if (!compiled) { throw new Exception("matcher not compiled"); }
+		out.writeInt(patternCount);
+		out.writeInt(maxTokens);
+		shingleMap.write(out);
+	}
+	/*================================================================================
+	 * match: probes every shingle of the article's title or content tokens.
+	 *===============================================================================*/
+	@Override
+	public void match(MoreoverArticle article, boolean title, BitSet symbolsFound)
+	throws Exception {
+
+		if (!compiled) { throw new Exception("matcher not compiled"); }
+
+		long[] tokens = title ? article.getTitleTokens() : article.getContentTokens();
+		int count = title ? article.getTitleTokenCount() : article.getContentTokenCount();
+		for (int i = 0; i < count; i++) {
+			long hash = SHINGLE_SEED;
+			int end = Math.min(count, i + maxTokens);
+			for (int j = i; j < end; j++) {
+				hash = shingle(hash, tokens[j]);
+				int symbol = shingleMap.get(hash, NONE);
+				if (symbol != NONE) {
+					symbolsFound.set(symbol);
+				}
+			}
+		}
+	}
+	/*================================================================================
+	 * shingle: extends a shingle hash by one token hash.
+	 *===============================================================================*/
+	protected static long shingle(long hash, long tokenHash) {
+		long h = hash * SHINGLE_MULTIPLIER + tokenHash;
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		return h;
+	}
+
+}
@@ -0,0 +1,287 @@
+package main;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+
+/*================================================================================
+ * ArticleExtractor
+ *
+ * single pass pull scanner over a moreover article's xml, populating MoreoverArticle
+ * fields directly. the field paths (FIELD_PATHS, relative to the document element) are
+ * compiled once into a tree of path nodes; the scanner walks that tree as elements
+ * open and close, and records the raw inner xml of each field element it reaches, in
+ * the same form as XMLOperator's XMLNode.innerXml. elements off every field path are
+ * skipped without being recorded, and the scan stops as soon as every requested field
+ * has been found.
+ *
+ * the extractor holds no per-article state, so a single instance is shared by all
+ * reader threads; scratch state is held by each thread's ExtractionContext. element
+ * names are compared in place, so scanning past elements allocates nothing.
+ *===============================================================================*/
+public class ArticleExtractor {
+
+	//fields, as bits of a field set
+	public static final int URL = 0;
+	public static final int IMAGE_URL = 1;
+	public static final int SEQUENCE_ID = 2;
+	public static final int TITLE = 3;
+	public static final int CONTENT = 4;
+	public static final int SOURCE_ID = 5;
+	public static final int SOURCE_NAME = 6;
+	public static final int SOURCE_URL = 7;
+	public static final int COUNTRY = 8;
+	public static final int PUBLISHED_DATE = 9;
+	public static final int ESTIMATED_PUBLISHED_DATE = 10;
+	public static final int CATEGORY = 11;
+	public static final int EDITORIAL_RANK = 12;
+	public static final int FIELD_COUNT = 13;
+
+	//path of each field, indexed as above.
+	public static final String[] FIELD_PATHS = {
+			"url",
+			"media,image,url",
+			"sequenceId",
+			"title",
+			"content",
+			"source,id",
+			"source,name",
+			"source,homeUrl",
+			"location,country",
+			"publishedDate",
+			"estimatedPublishedDate",
+			"source,category",
+			"source,editorialRank"
+	};
+
+	//field sets for the two extraction phases (see QueueReaderRunnable)
+	public static final int SOURCE_FIELDS = (1 << CATEGORY) | (1 << EDITORIAL_RANK);
+	public static final int ALL_FIELDS = (1 << FIELD_COUNT) - 1;
+	public static final int ARTICLE_FIELDS = ALL_FIELDS & ~SOURCE_FIELDS;
+	
+	//fields with few distinct values, which are reused rather than copied
+	private static final int CACHED_FIELDS = SOURCE_FIELDS;
+	
+	private static final DateTimeFormatter PUBLISH_DATE_FORMAT = 
+			DateTimeFormatter.ISO_LOCAL_DATE;
+	private static final int PUBLISH_DATE_LENGTH = 10;
+	
+
+	protected static class PathNode {
+		String[] childNames = new String[0];
+		PathNode[] children = new PathNode[0];
+		int field = -1;
+		
+		PathNode child(String name) {
+			for (int c = 0; c < childNames.length; c++) {
+				if (childNames[c].equals(name)) { return children[c]; }
+			}
+			PathNode child = new PathNode();
+			childNames = Arrays.copyOf(childNames, childNames.length + 1);
+			children = Arrays.copyOf(children, children.length + 1);
+			childNames[childNames.length - 1] = name;
+			children[children.length - 1] = child;
+			return child;
+		}
+		PathNode child(String xml, int nameStart, int nameEnd) {
+			int length = nameEnd - nameStart;
+			for (int c = 0; c < childNames.length; c++) {
+				if (childNames[c].length() == length && 
+						xml.regionMatches(nameStart, childNames[c], 0, length)) {
+					return children[c];
+				}
+			}
+			return null;
+		}
+	}
+
+	private final PathNode root = new PathNode();
+
+	public ArticleExtractor() {
+		for (int f = 0; f < FIELD_COUNT; f++) {
+			PathNode node = root;
+			for (String name: FIELD_PATHS[f].split(",")) {
+				node = node.child(name);
+			}
+			node.field = f;
+		}
+	}
+
+	/*================================================================================
+	 * extract: scans 'articleXml' for the fields in the argument field set, and sets
+	 * them on 'row'. fields that are absent are set to null (0 for the source id), as
+	 * with XMLOperator. throws if the sequence id is requested and is not a number.
+	 *===============================================================================*/
+	public void extract(String articleXml, MoreoverArticle row, int fields, 
+	ExtractionContext context) throws Exception {
+		scan(articleXml, fields, context);
+		apply(context.values, row, fields);
+	}
+	/*================================================================================
+	 * scan: records the raw inner xml of the first element found on each requested
+	 * field path. the first element in the document is the document element, and paths
+	 * are relative to it.
+	 *===============================================================================*/
+	protected void scan(String xml, int fields, ExtractionContext context) {
+
+		PathNode[] open = context.open;
+		int[] innerStart = context.innerStart;
+		String[] values = context.values;
+		Arrays.fill(values, null);
+		int depth = 0;
+		int found = 0;
+
+		int i = xml.indexOf('<');
+		while (i >= 0 && found != fields) {
+
+			if (xml.startsWith("<!--", i)) {
+				i = skipPast(xml, i, "-->");
+			} else if (xml.startsWith("<![CDATA[", i)) {
+				i = skipPast(xml, i, "]]>");
+			} else if (xml.startsWith("<?", i) || xml.startsWith("<!", i)) {
+				i = skipPast(xml, i, ">");
+			} else if (xml.startsWith("</", i)) {
+				//close: record the element if it is a requested field
+				if (depth > 0) { depth--; }
+				PathNode node = depth < ExtractionContext.MAX_DEPTH ? open[depth] : null;
+				if (node != null && node.field >= 0 && (fields & (1 << node.field)) != 0 &&
+						(found & (1 << node.field)) == 0) {
+					values[node.field] = value(xml, innerStart[depth], i, node.field, context);
+					found |= 1 << node.field;
+				}
+				i = skipPast(xml, i, ">");
+			} else {
+				//open: follow the path tree from the parent element
+				int end = tagEnd(xml, i);
+				if (end < 0) { break; }
+				int nameEnd = i + 1;
+				while (nameEnd < end && !Character.isWhitespace(xml.charAt(nameEnd)) &&
+						xml.charAt(nameEnd) != '/') {
+					nameEnd++;
+				}
+				PathNode node;
+				if (depth == 0) { node = root; }
+				else {
+					PathNode parent = 
+							depth <= ExtractionContext.MAX_DEPTH ? open[depth-1] : null;
+					node = parent == null ? null : parent.child(xml, i + 1, nameEnd);
+				}
+
+				if (xml.charAt(end - 1) == '/') {
+					if (node != null && node.field >= 0 && (fields & (1 << node.field)) != 0 &&
+							(found & (1 << node.field)) == 0) {
+						values[node.field] = "";
+						found |= 1 << node.field;
+					}
+				} else {
+					if (depth < ExtractionContext.MAX_DEPTH) {
+						open[depth] = node;
+						innerStart[depth] = end + 1;
+					}
+					depth++;
+				}
+				i = end + 1;
+			}
+			i = i < 0 ? -1 : xml.indexOf('<', i);
+		}
+	}
+	/*================================================================================
+	 * value: returns the text between 'start' and 'end'. for cached fields, a recent
+	 * value with the same text is returned instead of a copy.
+	 *===============================================================================*/
+	private static String value(String xml, int start, int end, int field, 
+	ExtractionContext context) {
+		
+		if ((CACHED_FIELDS & (1 << field)) == 0) { return xml.substring(start, end); }
+		
+		int length = end - start;
+		String[] recent = context.recentValues[field];
+		for (String v: recent) {
+			if (v != null && v.length() == length && xml.regionMatches(start, v, 0, length)) {
+				return v;
+			}
+		}
+		String v = xml.substring(start, end);
+		recent[context.recentNext[field]] = v;
+		context.recentNext[field] = (context.recentNext[field] + 1) % recent.length;
+		return v;
+	}
+	/*================================================================================
+	 * apply: sets the requested fields on 'row' from their raw values.
+	 *===============================================================================*/
+	protected static void apply(String[] values, MoreoverArticle row, int fields)
+	throws Exception {
+
+		if ((fields & (1 << URL)) != 0) {
+			row.url = values[URL] == null ? null : values[URL].trim();
+		}
+		if ((fields & (1 << IMAGE_URL)) != 0) {
+			row.imageUrl = values[IMAGE_URL] == null ? null : values[IMAGE_URL].trim();
+		}
+		if ((fields & (1 << SEQUENCE_ID)) != 0) {
+			row.sequenceId = Long.parseLong(values[SEQUENCE_ID]);
+		}
+		if ((fields & (1 << TITLE)) != 0) { row.title = values[TITLE]; }
+		if ((fields & (1 << CONTENT)) != 0) { row.content = values[CONTENT]; }
+		if ((fields & (1 << SOURCE_ID)) != 0) {
+			try {
+				row.sourceId = Integer.parseInt(values[SOURCE_ID]);
+			} catch (Exception e) { row.sourceId = 0; }
+		}
+		if ((fields & (1 << SOURCE_NAME)) != 0) { row.sourceName = values[SOURCE_NAME]; }
+		if ((fields & (1 << SOURCE_URL)) != 0) { row.sourceUrl = values[SOURCE_URL]; }
+		if ((fields & (1 << COUNTRY)) != 0) { row.country = values[COUNTRY]; }
+		if ((fields & (1 << PUBLISHED_DATE)) != 0) {
+			//try to extract publish date.
+			row.publishDate = parsePublishDate(values[PUBLISHED_DATE]);
+			if (row.publishDate == null) {
+				row.publishDate = parsePublishDate(values[ESTIMATED_PUBLISHED_DATE]);
+			}
+		}
+		if ((fields & (1 << CATEGORY)) != 0) { row.category = values[CATEGORY]; }
+		if ((fields & (1 << EDITORIAL_RANK)) != 0) {
+			row.editorialRank = values[EDITORIAL_RANK];
+		}
+	}
+	/*================================================================================
+	 * parsePublishDate: parses the date part of a moreover timestamp (yyyy-MM-dd...) as
+	 * the start of that day in local time. returns null if absent or malformed. the
+	 * original path (XMLArticleExtractor) parses only yyyy-MM-d, leniently, which misreads
+	 * the day: 2026-10-18 as 2026-10-01, and 2026-10-05 as 2026-09-30.
+	 *===============================================================================*/
+	protected static Timestamp parsePublishDate(String value) {
+		if (value == null || value.length() < PUBLISH_DATE_LENGTH) { return null; }
+		try {
+			return Timestamp.valueOf(LocalDate.parse(value.substring(0, PUBLISH_DATE_LENGTH), 
+					PUBLISH_DATE_FORMAT).atStartOfDay());
+		} catch (DateTimeParseException e) { return null; }
+	}
+	/*================================================================================
+	 * tagEnd: returns the index of the '>' closing the start tag at 'from', or -1. a '>'
+	 * inside a quoted attribute value does not close the tag.
+	 *===============================================================================*/
+	private static int tagEnd(String xml, int from) {
+		char quote = 0;
+		for (int i = from + 1; i < xml.length(); i++) {
+			char c = xml.charAt(i);
+			if (quote != 0) {
+				if (c == quote) { quote = 0; }
+			} else if (c == '"' || c == '\'') {
+				quote = c;
+			} else if (c == '>') {
+				return i;
+			}
+		}
+		return -1;
+	}
+	/*================================================================================
+	 * skipPast: returns the index after the next 'token' at or after 'from', or -1.
+	 *===============================================================================*/
+	private static int skipPast(String xml, int from, String token) {
+		int i = xml.indexOf(token, from);
+		return i < 0 ? -1 : i + token.length();
+	}
+
+}
@@ -0,0 +1,156 @@
+package main;
+
+import java.sql.Timestamp;
+import java.util.concurrent.BlockingQueue;
+
+import Filters.FilterOperator;
+
+/*================================================================================
+ * ArticleMatcherRunnable
+ *
+ * this class is designed to run indefinitely.
+ *
+ * cpu stage of article processing. takes raw article messages from the handoff filled
+ * by the QueueReaderRunnables, extracts each, checks it for relevance, and stores
+ * relevant articles in the global relevant articles holder. matchers are not tied to a
+ * queue; Main runs one per core, independently of the number of queues and readers.
+ *===============================================================================*/
+public class ArticleMatcherRunnable implements Runnable {
+
+	//parameters
+	public int matcherNum = -1;
+	public BlockingQueue<QueuedArticle> articleHandoff = null;
+	public MpscRingBuffer<MoreoverArticle> relevantArticleQueue = null;
+	public ArticleExtractor extractor = null;
+	//if set, articles are extracted with XMLOperator instead of the extractor
+	public XMLArticleExtractor xmlExtractor = null;
+	public FilterOperator filter = null;
+	public Exception exc = null;
+
+	//return values
+	public long exceptionCount = 0;
+	public long articleCount = 0;
+	public long relevantArticleCount = 0;
+
+	//per thread extraction scratch state
+	private final ExtractionContext context = new ExtractionContext();
+
+	public String threadStamp;
+	/*================================================================================
+	 * run
+	 *===============================================================================*/
+	@Override
+	public void run() {
+
+		try {
+			checkParameters();
+			printToConsole("running article matcher");
+		} catch (Exception e) {
+			exc = e;
+			e.printStackTrace();
+			return;
+		}
+
+		while (true) {
+			QueuedArticle nextArticle;
+			try { nextArticle = articleHandoff.take(); }
+			catch (InterruptedException e) {
+				printToConsole("interrupted. thread terminated");
+				return;
+			}
+
+			articleCount++;
+			try {
+				processArticle(nextArticle.xml);
+			} catch (Exception e) {
+				printToConsole("exception: " + e.getMessage());
+				e.printStackTrace();
+				exceptionCount+=1;
+			} finally {
+				//lets the reader delete the message from its queue
+				nextArticle.markProcessed();
+			}
+		}
+	}
+	/*================================================================================
+	 * processArticle: extracts a dequeued article, checks it for relevance, and if
+	 * relevant stores it in the global relevant articles holder.
+	 *===============================================================================*/
+	protected void processArticle(String nextArticle) throws Exception {
+
+		//extract the source fields only, and reject on them before parsing the rest
+		//of the article. most articles are rejected here.
+		MoreoverArticle row = extractSourceData(nextArticle);
+
+		//if relevant, write to final queue. otherwise, reuse the article object.
+		if (filter.checkSourceRelevance(row) &&
+				filter.checkContentRelevance(threadStamp, extractData(nextArticle, row))) {
+			//printToConsole("RELEVANT ARTICLE FOUND (" + row.firstDrugFound + ")");
+			enqueueRelevantArticle(row);
+			relevantArticleCount++;
+		} else {
+			context.recycleArticle(row);
+		}
+	}
+	/*================================================================================
+	 * checkParameters: checks that parameters have been properly initialized and throws
+	 * exception if not.
+	 *===============================================================================*/
+	public void checkParameters() throws Exception {
+		if (matcherNum < 0) {
+			throw new Exception("matcherNum not specified (" + matcherNum + ")");
+		}
+		threadStamp = "(reader matcher_" + matcherNum + ") ";
+		if (filter == null) {
+			throw new Exception("filter not initialized. value is null (" + matcherNum + ")");
+		} else if (extractor == null) {
+			throw new Exception("extractor not initialized. value is null (" + matcherNum + ")");
+		} else if (articleHandoff == null) {
+			throw new Exception("articleHandoff not initialized. value is null (" +
+					matcherNum + ")");
+		} else if (relevantArticleQueue == null) {
+			throw new Exception("relevantArticleQueue not initialized. "
+					+ "value is null (" + matcherNum + ")");
+		}
+	}
+	/*================================================================================
+	 * enqueueRelevantArticle: enqueues a relevant article in the relevantArticleQueue,
+	 * waiting while it is full.
+	 *===============================================================================*/
+	protected void enqueueRelevantArticle(MoreoverArticle article) throws Exception{
+		relevantArticleQueue.put(article);
+	}
+	/*================================================================================
+	 * extractSourceData: first extraction phase. scans the xml article for the source
+	 * category and editorial rank only, and returns a MoreoverArticle holding just those
+	 * two fields. see FilterOperator.checkSourceRelevance. with the xmlExtractor, the 
+	 * article is parsed in full here instead, and the second phase does nothing.
+	 *===============================================================================*/
+	protected MoreoverArticle extractSourceData(String articleXml) throws Exception {
+		if (xmlExtractor != null) { return xmlExtractor.extractData(articleXml); }
+		MoreoverArticle row = context.obtainArticle();
+		extractor.extract(articleXml, row, ArticleExtractor.SOURCE_FIELDS, context);
+		return row;
+	}
+	/*================================================================================
+	 * extractData: second extraction phase. given an xml article as a string, extracts
+	 * the remaining fields into the argument MoreoverArticle object, which is returned.
+	 *===============================================================================*/
+	protected MoreoverArticle extractData(String articleXml, MoreoverArticle row)
+	throws Exception {
+
+		if (xmlExtractor != null) { return row; }
+		extractor.extract(articleXml, row, ArticleExtractor.ARTICLE_FIELDS, context);
+		row.recordDate = new Timestamp(System.currentTimeMillis());
+		row.fullXml = articleXml;
+
+		return row;
+	}
+	/*================================================================================
+	 * printToConsole: prints a string to the console, including thread identification
+	 *===============================================================================*/
+	protected void printToConsole(String statement) {
+		System.out.println(threadStamp + statement);
+	}
+
+}
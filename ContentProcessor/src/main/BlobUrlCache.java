@@ -0,0 +1,192 @@
+package main;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*================================================================================
+ * BlobUrlCache
+ *
+ * bounded least recently used map from a remote url to the url of the blob it was
+ * stored as, so that source logos and syndicated images are fetched and written once
+ * and then referenced by later articles. entries expire ttlMillis after they were
+ * stored, and the least recently used entry is dropped past 'capacity'.
+ *
+ * if a path is given, the cache is loaded from it on startup and saved back with
+ * save. the file is written to a temporary file and renamed into place, as with the
+ * dictionary snapshot. layout: magic, version, entry count, then for each entry the
+ * key, the blob url and the time it was stored. all methods are thread safe.
+ *===============================================================================*/
+public class BlobUrlCache {
+
+	public static final int MAGIC = 0x4B594D42;
+	public static final int VERSION = 1;
+
+	protected static class CachedUrl {
+		final String blobUrl;
+		final long storedAt;
+
+		CachedUrl(String blobUrl, long storedAt) {
+			this.blobUrl = blobUrl;
+			this.storedAt = storedAt;
+		}
+	}
+
+	private final long ttlMillis;
+	private final String path;
+	private final LinkedHashMap<String,CachedUrl> entries;
+
+	//metrics
+	private final AtomicLong hitCount = new AtomicLong(0);
+	private final AtomicLong missCount = new AtomicLong(0);
+
+	/*================================================================================
+	 * BlobUrlCache: 'path' may be null, in which case nothing is persisted.
+	 *===============================================================================*/
+	public BlobUrlCache(final int capacity, long ttlMillis, String path) {
+		this.ttlMillis = ttlMillis;
+		this.path = path;
+		entries = new LinkedHashMap<String,CachedUrl>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String,CachedUrl> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/*================================================================================
+	 * get: returns the blob url stored for 'key', or null if absent or expired.
+	 *===============================================================================*/
+	public String get(String key) {
+		synchronized (entries) {
+			CachedUrl e = entries.get(key);
+			if (e != null && System.currentTimeMillis() - e.storedAt >= ttlMillis) {
+				entries.remove(key);
+				e = null;
+			}
+			if (e == null) {
+				missCount.incrementAndGet();
+				return null;
+			}
+			hitCount.incrementAndGet();
+			return e.blobUrl;
+		}
+	}
+	/*================================================================================
+	 * put: records the blob url stored for 'key'.
+	 *===============================================================================*/
+	public void put(String key, String blobUrl) {
+		synchronized (entries) {
+			entries.put(key, new CachedUrl(blobUrl, System.currentTimeMillis()));
+		}
+	}
+
+	/*================================================================================
+	 * clear: removes every entry, and the saved file. for when the blobs are deleted.
+	 *===============================================================================*/
+	public void clear() {
+		synchronized (entries) { entries.clear(); }
+		if (path != null) { new File(path).delete(); }
+	}
+
+	/*================================================================================
+	 * load: reads the entries saved at path, skipping expired ones. returns the number
+	 * loaded. a missing file, or one of a different version, loads nothing.
+	 *===============================================================================*/
+	public int load() throws Exception {
+		if (path == null) { return 0; }
+		File file = new File(path);
+		if (!file.isFile()) { return 0; }
+
+		long now = System.currentTimeMillis();
+		int loaded = 0;
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(file)));
+		try {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) { return 0; }
+			int count = in.readInt();
+			synchronized (entries) {
+				for (int i = 0; i < count; i++) {
+					String key = in.readUTF();
+					CachedUrl e = new CachedUrl(in.readUTF(), in.readLong());
+					if (now - e.storedAt < ttlMillis) {
+						entries.put(key, e);
+						loaded++;
+					}
+				}
+			}
+		} finally {
+			in.close();
+		}
+		return loaded;
+	}
+	/*================================================================================
+	 * save: writes the unexpired entries to path, least recently used first, so that
+	 * load restores the same order.
+	 *===============================================================================*/
+	public void save() throws Exception {
+		if (path == null) { return; }
+
+		List<String> keys = new ArrayList<String>();
+		List<CachedUrl> values = new ArrayList<CachedUrl>();
+		long now = System.currentTimeMillis();
+		synchronized (entries) {
+			Iterator<Map.Entry<String,CachedUrl>> it = entries.entrySet().iterator();
+			while (it.hasNext()) {
+				Map.Entry<String,CachedUrl> e = it.next();
+				if (now - e.getValue().storedAt >= ttlMillis) {
+					it.remove();
+				} else {
+					keys.add(e.getKey());
+					values.add(e.getValue());
+				}
+			}
+		}
+
+		File target = new File(path);
+		File temp = new File(path + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(temp)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(keys.size());
+			for (int i = 0; i < keys.size(); i++) {
+				out.writeUTF(keys.get(i));
+				out.writeUTF(values.get(i).blobUrl);
+				out.writeLong(values.get(i).storedAt);
+			}
+		} finally {
+			out.close();
+		}
+		Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/*================================================================================
+	 * metrics
+	 *===============================================================================*/
+	public int size() {
+		synchronized (entries) { return entries.size(); }
+	}
+	public long hitCount() {
+		return hitCount.get();
+	}
+	public long missCount() {
+		return missCount.get();
+	}
+
+}
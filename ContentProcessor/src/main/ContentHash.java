@@ -0,0 +1,41 @@
+package main;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/*================================================================================
+ * ContentHash
+ *
+ * sha-256 digests of blob payloads, as lowercase hex. blobs are named by the hash of
+ * their content, so that identical payloads are stored once. see WriterRunnable.
+ *===============================================================================*/
+public class ContentHash {
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	/*================================================================================
+	 * of: returns the hash of 'bytes', or of the utf-8 encoding of 'text'.
+	 *===============================================================================*/
+	public static String of(byte[] bytes) throws Exception {
+		return hex(newDigest().digest(bytes));
+	}
+	public static String of(String text) throws Exception {
+		return of(text.getBytes(StandardCharsets.UTF_8));
+	}
+	/*================================================================================
+	 * newDigest/hex: for hashing a payload as it is streamed, e.g. through a 
+	 * DigestInputStream. hex formats the completed digest as 'of' does.
+	 *===============================================================================*/
+	public static MessageDigest newDigest() throws Exception {
+		return MessageDigest.getInstance("SHA-256");
+	}
+	public static String hex(byte[] digest) {
+		char[] hex = new char[digest.length * 2];
+		for (int i = 0; i < digest.length; i++) {
+			hex[2*i] = HEX[(digest[i] >> 4) & 0xF];
+			hex[2*i + 1] = HEX[digest[i] & 0xF];
+		}
+		return new String(hex);
+	}
+
+}
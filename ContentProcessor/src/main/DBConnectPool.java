@@ -0,0 +1,290 @@
+package main;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import dbconnect.main.DBConnect;
+
+/*================================================================================
+ * DBConnectPool
+ *
+ * shared pool of database connections, connected through Main.connectToDatabase. at
+ * most maxActive connections are borrowed at once; further borrowers wait. minIdle
+ * connections are kept connected in the background, so that a borrower does not pay
+ * for connection and authentication.
+ *
+ * a connection that was only read from is returned with release, and is reused.
+ * DBConnect only commits by closing, so a connection that was written to is committed
+ * with commitClose, and replaced in the background. a connection left in an unknown
+ * state by an exception is given up with discard, which rolls it back and closes it.
+ * a borrower's permit is only freed once its connection is closed.
+ *
+ * a connection idle for longer than VALIDATE_IDLE_MILLIS is validated on borrow, and
+ * closed if it fails. connections borrowed for longer than leakMillis are reported
+ * once by checkLeaks, with the stack of the borrower.
+ *===============================================================================*/
+public class DBConnectPool {
+
+	private static final String VALIDATION_QUERY = "select 1";
+	private static final String ROLLBACK_STATEMENT = "rollback";
+	private static final long VALIDATE_IDLE_MILLIS = 30*Main.MILLIS_PER_SEC;
+
+	protected static class PooledConnection {
+		DBConnect con;
+		long lastUsed;
+		long borrowedAt;
+		Exception borrowedFrom;
+		boolean leakReported;
+	}
+
+	private final int minIdle;
+	private final int maxActive;
+	private final long leakMillis;
+	private final Semaphore permits;
+	private final LinkedBlockingDeque<PooledConnection> idle =
+			new LinkedBlockingDeque<PooledConnection>();
+	private final Map<DBConnect,PooledConnection> active =
+			new IdentityHashMap<DBConnect,PooledConnection>();
+	private final AtomicInteger pendingConnects = new AtomicInteger(0);
+	private final ExecutorService connector;
+
+	//metrics
+	private final AtomicLong borrowCount = new AtomicLong(0);
+	private final AtomicLong waitNanos = new AtomicLong(0);
+	private final AtomicLong maxWaitNanos = new AtomicLong(0);
+	private final AtomicLong connectCount = new AtomicLong(0);
+	private final AtomicLong validationFailureCount = new AtomicLong(0);
+	private final AtomicLong leakCount = new AtomicLong(0);
+	private final AtomicLong abandonCount = new AtomicLong(0);
+
+	public String threadStamp = "(reader dbpool) ";
+
+	/*================================================================================
+	 * DBConnectPool
+	 *===============================================================================*/
+	public DBConnectPool(int minIdle, int maxActive, long leakMillis) {
+		this.minIdle = minIdle;
+		this.maxActive = maxActive;
+		this.leakMillis = leakMillis;
+		permits = new Semaphore(maxActive, true);
+		connector = Executors.newSingleThreadExecutor(r -> {
+			Thread t = new Thread(r);
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	/*================================================================================
+	 * borrow: returns a connected DBConnect, waiting while maxActive are borrowed. the
+	 * connection must be given back with release, commitClose or discard.
+	 *===============================================================================*/
+	public DBConnect borrow() throws Exception {
+
+		long startWait = System.nanoTime();
+		permits.acquire();
+		long wait = System.nanoTime() - startWait;
+		borrowCount.incrementAndGet();
+		waitNanos.addAndGet(wait);
+		long maxWait;
+		while (wait > (maxWait = maxWaitNanos.get()) &&
+				!maxWaitNanos.compareAndSet(maxWait, wait)) { }
+
+		PooledConnection p;
+		try {
+			while ((p = idle.pollFirst()) != null && !validate(p)) { }
+			if (p == null) { p = connect(); }
+		} catch (Exception e) {
+			permits.release();
+			throw e;
+		}
+
+		p.borrowedAt = System.currentTimeMillis();
+		p.borrowedFrom = new Exception("connection borrowed here");
+		p.leakReported = false;
+		synchronized (active) { active.put(p.con, p); }
+		refill();
+		return p.con;
+	}
+	/*================================================================================
+	 * release: returns a connection that was only read from, for reuse.
+	 *===============================================================================*/
+	public void release(DBConnect con) {
+		PooledConnection p = untrack(con);
+		if (p == null) { return; }
+		p.lastUsed = System.currentTimeMillis();
+		p.borrowedFrom = null;
+		idle.offerFirst(p);
+		permits.release();
+	}
+	/*================================================================================
+	 * commitClose: commits and closes a connection, which is replaced in the background.
+	 *===============================================================================*/
+	public void commitClose(DBConnect con) throws Exception {
+		PooledConnection p = untrack(con);
+		try {
+			con.CommitClose();
+		} finally {
+			if (p != null) { permits.release(); }
+			refill();
+		}
+	}
+	/*================================================================================
+	 * discard: gives up a connection without committing it. it is not reused. DBConnect
+	 * can only close by committing, so the connection is rolled back first; if the
+	 * rollback fails it is abandoned unclosed rather than committed, and counted.
+	 *===============================================================================*/
+	public void discard(DBConnect con) {
+		PooledConnection p = untrack(con);
+		try {
+			con.ExecuteStatement(ROLLBACK_STATEMENT);
+		} catch (Exception e) {
+			abandonCount.incrementAndGet();
+			printToConsole("abandoning connection, rollback failed: " + e.getMessage());
+			if (p != null) { permits.release(); }
+			refill();
+			return;
+		}
+		close(con);
+		if (p != null) { permits.release(); }
+		refill();
+	}
+	/*================================================================================
+	 * checkLeaks: reports connections borrowed for longer than leakMillis, once each.
+	 * returns the number of connections currently over the limit.
+	 *===============================================================================*/
+	public int checkLeaks() {
+		List<PooledConnection> borrowed;
+		synchronized (active) { borrowed = new ArrayList<PooledConnection>(active.values()); }
+
+		long now = System.currentTimeMillis();
+		int leaks = 0;
+		for (PooledConnection p: borrowed) {
+			if (now - p.borrowedAt < leakMillis) { continue; }
+			leaks++;
+			if (!p.leakReported) {
+				p.leakReported = true;
+				leakCount.incrementAndGet();
+				printToConsole("possible connection leak: borrowed " + (now - p.borrowedAt) +
+						" mls ago");
+				p.borrowedFrom.printStackTrace(System.out);
+			}
+		}
+		return leaks;
+	}
+
+	/*================================================================================
+	 * metrics
+	 *===============================================================================*/
+	public int activeCount() {
+		synchronized (active) { return active.size(); }
+	}
+	public int maxActive() {
+		return maxActive;
+	}
+	public int idleCount() {
+		return idle.size();
+	}
+	public long borrowCount() {
+		return borrowCount.get();
+	}
+	public long averageWaitMillis() {
+		long borrows = borrowCount.get();
+		return borrows == 0 ? 0 : waitNanos.get() / borrows / 1000000;
+	}
+	public long maxWaitMillis() {
+		return maxWaitNanos.get() / 1000000;
+	}
+	public long connectCount() {
+		return connectCount.get();
+	}
+	public long validationFailureCount() {
+		return validationFailureCount.get();
+	}
+	public long leakCount() {
+		return leakCount.get();
+	}
+	public long abandonCount() {
+		return abandonCount.get();
+	}
+
+	/*================================================================================
+	 * untrack: stops tracking a borrowed connection. the caller frees its permit.
+	 *===============================================================================*/
+	private PooledConnection untrack(DBConnect con) {
+		synchronized (active) { return active.remove(con); }
+	}
+	/*================================================================================
+	 * close: closes a connection that holds no uncommitted writes. failures are only
+	 * reported, since the connection is not used again either way.
+	 *===============================================================================*/
+	private void close(DBConnect con) {
+		try {
+			con.CommitClose();
+		} catch (Exception e) {
+			printToConsole("could not close connection: " + e.getMessage());
+		}
+	}
+	/*================================================================================
+	 * refill: connects idle connections in the background, up to minIdle.
+	 *===============================================================================*/
+	private void refill() {
+		while (idle.size() + pendingConnects.get() < minIdle) {
+			pendingConnects.incrementAndGet();
+			connector.execute(() -> {
+				try {
+					PooledConnection p = connect();
+					idle.offerLast(p);
+				} catch (Exception e) {
+					printToConsole("background connect failed: " + e.getMessage());
+				} finally {
+					pendingConnects.decrementAndGet();
+				}
+			});
+		}
+	}
+	/*================================================================================
+	 * connect: opens a new connection.
+	 *===============================================================================*/
+	private PooledConnection connect() throws Exception {
+		PooledConnection p = new PooledConnection();
+		p.con = new DBConnect();
+		Main.connectToDatabase(p.con);
+		p.lastUsed = System.currentTimeMillis();
+		connectCount.incrementAndGet();
+		return p;
+	}
+	/*================================================================================
+	 * validate: checks a connection that has been idle for a while with a trivial query.
+	 * a connection that fails is closed. idle connections were only read from, so there
+	 * is nothing to commit.
+	 *===============================================================================*/
+	private boolean validate(PooledConnection p) {
+		if (System.currentTimeMillis() - p.lastUsed < VALIDATE_IDLE_MILLIS) { return true; }
+		try {
+			ResultSet rs = p.con.ExecuteQuery(VALIDATION_QUERY);
+			rs.close();
+			return true;
+		} catch (Exception e) {
+			validationFailureCount.incrementAndGet();
+			printToConsole("dropping invalid connection: " + e.getMessage());
+			close(p.con);
+			return false;
+		}
+	}
+	/*================================================================================
+	 * printToConsole: prints a string to the console, including thread identification
+	 *===============================================================================*/
+	protected void printToConsole(String statement) {
+		System.out.println(threadStamp + statement);
+	}
+
+}
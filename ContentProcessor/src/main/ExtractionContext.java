@@ -0,0 +1,49 @@
+package main;
+
+/*================================================================================
+ * ExtractionContext
+ *
+ * scratch state for ArticleExtractor, owned by a single queue reader thread and reused
+ * for every article it reads: the scanner's element stack and field value slots, a
+ * small cache of recent source field values (so that the common category and editorial
+ * rank strings are not copied out of every message), and a spare MoreoverArticle
+ * recycled from the last rejected article. together these keep allocation for a
+ * rejected article close to zero. not thread safe.
+ *===============================================================================*/
+public class ExtractionContext {
+
+	protected static final int MAX_DEPTH = 32;
+	protected static final int RECENT_VALUE_COUNT = 8;
+
+	//scanner state (see ArticleExtractor.scan)
+	protected final ArticleExtractor.PathNode[] open =
+			new ArticleExtractor.PathNode[MAX_DEPTH];
+	protected final int[] innerStart = new int[MAX_DEPTH];
+	protected final String[] values = new String[ArticleExtractor.FIELD_COUNT];
+
+	//recently seen values of cached fields, replaced round robin
+	protected final String[][] recentValues =
+			new String[ArticleExtractor.FIELD_COUNT][RECENT_VALUE_COUNT];
+	protected final int[] recentNext = new int[ArticleExtractor.FIELD_COUNT];
+
+	private MoreoverArticle spareArticle = null;
+
+	/*================================================================================
+	 * obtainArticle: returns an empty article, reusing the last recycled one if any.
+	 *===============================================================================*/
+	public MoreoverArticle obtainArticle() {
+		MoreoverArticle article = spareArticle;
+		if (article == null) { return new MoreoverArticle(); }
+		spareArticle = null;
+		article.reset();
+		return article;
+	}
+	/*================================================================================
+	 * recycleArticle: returns a rejected article for reuse. the caller must not keep
+	 * any reference to it.
+	 *===============================================================================*/
+	public void recycleArticle(MoreoverArticle article) {
+		spareArticle = article;
+	}
+
+}
@@ -0,0 +1,190 @@
+package main;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/*================================================================================
+ * ExtractorParityCheck
+ *
+ * differential check of ArticleExtractor against the original XMLOperator path
+ * (XMLArticleExtractor). run against a directory of recorded moreover articles, one
+ * message per file, exactly as dequeued:
+ *
+ *		java main.ExtractorParityCheck <directory>
+ *
+ * every article is extracted both ways and each MoreoverArticle field is compared,
+ * except recordDate and fullXml, which ArticleMatcherRunnable sets for
+ * ArticleExtractor; an extraction that throws is compared by its exception type. the
+ * EDGE_CASES below are always checked as well. ContentProcessor/fixtures/articles
+ * holds articles in the form the queries enqueue them; add recorded articles there as
+ * they are captured. prints every mismatch and a count per field, and exits with
+ * status 1 if any were found outside CHANGED_FIELDS. run it, with the xmlparser
+ * library on the class path, before relying on ArticleExtractor for a new feed format;
+ * until it passes, run with -DarticleExtraction=xml (see Main).
+ *===============================================================================*/
+public class ExtractorParityCheck {
+
+	public static final String[] FIELD_NAMES = {
+			"url", "imageUrl", "sequenceId", "title", "content", "sourceId", "sourceName",
+			"sourceUrl", "country", "publishDate", "category", "editorialRank"
+	};
+	//fields ArticleExtractor deliberately converts differently: mismatches are listed, but
+	//do not fail the check. see ArticleExtractor.parsePublishDate.
+	public static final List<String> CHANGED_FIELDS = Arrays.asList("publishDate");
+	private static final int MAX_VALUE_LENGTH = 80;
+
+	//synthetic articles for the cases where a scanner is most likely to differ from a
+	//full parse: the document element name, repeated elements, CDATA, attributes
+	//containing '>', nested elements sharing a field's name, and surrounding whitespace.
+	public static final String[][] EDGE_CASES = {
+		{ "plain", "<article><sequenceId>1</sequenceId><title>Title</title>"
+				+ "<content>Body</content><publishedDate>2026-10-18T01:02:03Z</publishedDate>"
+				+ "<url>http://a.example/1</url><media><image><url>http://a.example/1.jpg"
+				+ "</url></image></media><source><id>7</id><name>Source</name><homeUrl>"
+				+ "http://a.example</homeUrl><category>national</category><editorialRank>2"
+				+ "</editorialRank></source><location><country>US</country></location>"
+				+ "</article>" },
+		{ "root element name", "<?xml version=\"1.0\" encoding=\"UTF-8\"?><TEXT><sequenceId>2"
+				+ "</sequenceId><title>Title</title><url>http://a.example/2</url><source>"
+				+ "<category>general</category><editorialRank>1</editorialRank></source>"
+				+ "</TEXT>" },
+		{ "repeated elements", "<article><sequenceId>3</sequenceId><title>First</title>"
+				+ "<title>Second</title><url>http://a.example/3a</url><url>http://a.example/3b"
+				+ "</url><media><image><url>http://a.example/3a.jpg</url></image><image><url>"
+				+ "http://a.example/3b.jpg</url></image></media><source><category>local"
+				+ "</category><editorialRank>3</editorialRank></source></article>" },
+		{ "cdata", "<article><sequenceId>4</sequenceId><title><![CDATA[A <b>bold</b> title"
+				+ "]]></title><content><![CDATA[text with </content> and ]]> after]]>"
+				+ "</content><source><category>journal</category><editorialRank>1"
+				+ "</editorialRank></source></article>" },
+		{ "attributes containing >", "<article lang=\"en>us\"><sequenceId>5</sequenceId>"
+				+ "<title type='a>b'>Title</title><url rel=\"x>y\">http://a.example/5</url>"
+				+ "<source kind=\">\"><category>academic</category><editorialRank>4"
+				+ "</editorialRank></source></article>" },
+		{ "nested names", "<article><sequenceId>6</sequenceId><title>Title</title><source>"
+				+ "<feed><id>99</id><name>Feed</name><category>feed category</category>"
+				+ "<imageUrl>http://a.example/logo.png</imageUrl></feed><id>8</id><name>"
+				+ "Source</name><category>organization</category><editorialRank>2"
+				+ "</editorialRank></source><location><state>CA</state><country>US</country>"
+				+ "</location></article>" },
+		{ "whitespace", "<article>\n  <sequenceId> 7 </sequenceId>\n  <title>  Title  "
+				+ "</title>\n  <url>\n    http://a.example/7\n  </url>\n  <source>\n    <id> 9 "
+				+ "</id>\n    <category> general </category>\n    <editorialRank> 1 "
+				+ "</editorialRank>\n  </source>\n</article>\n" },
+		{ "empty elements", "<article><sequenceId>8</sequenceId><title/><content></content>"
+				+ "<url /><source><category>national</category><editorialRank>2"
+				+ "</editorialRank></source></article>" },
+	};
+
+	/*================================================================================
+	 * main
+	 *===============================================================================*/
+	public static void main(String[] args) throws Exception {
+
+		List<String> names = new ArrayList<String>();
+		List<String> articles = new ArrayList<String>();
+		for (String[] edgeCase: EDGE_CASES) {
+			names.add("edge case: " + edgeCase[0]);
+			articles.add(edgeCase[1]);
+		}
+		if (args.length > 0) {
+			File[] files = new File(args[0]).listFiles();
+			if (files == null) { throw new Exception("not a directory: " + args[0]); }
+			Arrays.sort(files);
+			for (File f: files) {
+				if (!f.isFile()) { continue; }
+				names.add(f.getName());
+				articles.add(new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8));
+			}
+		}
+
+		ArticleExtractor extractor = new ArticleExtractor();
+		XMLArticleExtractor xmlExtractor = new XMLArticleExtractor();
+		ExtractionContext context = new ExtractionContext();
+		int[] mismatchCounts = new int[FIELD_NAMES.length];
+		int mismatchedArticles = 0;
+		int changedArticles = 0;
+
+		for (int a = 0; a < articles.size(); a++) {
+			Object[] expected = extractXml(xmlExtractor, articles.get(a));
+			Object[] actual = extractScan(extractor, context, articles.get(a));
+			boolean mismatched = false;
+			boolean changed = false;
+			for (int f = 0; f < FIELD_NAMES.length; f++) {
+				if (Objects.equals(expected[f], actual[f])) { continue; }
+				mismatchCounts[f]++;
+				if (CHANGED_FIELDS.contains(FIELD_NAMES[f])) {
+					changed = true;
+				} else {
+					mismatched = true;
+				}
+				System.out.println(names.get(a) + ": " + FIELD_NAMES[f] +
+						(CHANGED_FIELDS.contains(FIELD_NAMES[f]) ? " (changed)" : "") +
+						"\n\txml:     " + describe(expected[f]) +
+						"\n\textract: " + describe(actual[f]));
+			}
+			if (mismatched) { mismatchedArticles++; }
+			if (changed) { changedArticles++; }
+		}
+
+		System.out.println(articles.size() + " articles checked, " + mismatchedArticles +
+				" with mismatches, " + changedArticles + " with changed fields");
+		for (int f = 0; f < FIELD_NAMES.length; f++) {
+			if (mismatchCounts[f] > 0) {
+				System.out.println("\t" + FIELD_NAMES[f] + ": " + mismatchCounts[f] +
+						(CHANGED_FIELDS.contains(FIELD_NAMES[f]) ? " (changed)" : ""));
+			}
+		}
+		if (mismatchedArticles > 0) { System.exit(1); }
+	}
+	/*================================================================================
+	 * extractXml/extractScan: extracts an article with each path, returning its field
+	 * values in FIELD_NAMES order. if extraction throws, every field holds its type.
+	 *===============================================================================*/
+	protected static Object[] extractXml(XMLArticleExtractor xmlExtractor, String xml) {
+		try {
+			return fields(xmlExtractor.extractData(xml));
+		} catch (Exception e) {
+			return failed(e);
+		}
+	}
+	protected static Object[] extractScan(ArticleExtractor extractor,
+	ExtractionContext context, String xml) {
+		MoreoverArticle row = new MoreoverArticle();
+		try {
+			extractor.extract(xml, row, ArticleExtractor.ALL_FIELDS, context);
+		} catch (Exception e) {
+			return failed(e);
+		}
+		return fields(row);
+	}
+	protected static Object[] fields(MoreoverArticle row) {
+		return new Object[] { row.url, row.imageUrl, row.sequenceId, row.title, row.content,
+				row.sourceId, row.sourceName, row.sourceUrl, row.country, row.publishDate,
+				row.category, row.editorialRank };
+	}
+	protected static Object[] failed(Exception e) {
+		Object[] values = new Object[FIELD_NAMES.length];
+		Arrays.fill(values, "exception: " + e.getClass().getSimpleName());
+		return values;
+	}
+	/*================================================================================
+	 * describe: a value as a single quoted line, shortened to MAX_VALUE_LENGTH.
+	 *===============================================================================*/
+	protected static String describe(Object value) {
+		if (value == null) { return "null"; }
+		String s = value.toString().replace("\n", "\\n").replace("\r", "\\r")
+				.replace("\t", "\\t");
+		if (s.length() > MAX_VALUE_LENGTH) {
+			s = s.substring(0, MAX_VALUE_LENGTH) + "... (" + value.toString().length() +
+					" chars)";
+		}
+		return "\"" + s + "\"";
+	}
+
+}
@@ -0,0 +1,329 @@
+package main;
+
+import java.awt.image.BufferedImage;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.imageio.ImageIO;
+
+/*================================================================================
+ * ImageFetcher
+ *
+ * fetches and decodes article images and source logos on a pool of FETCH_THREADS,
+ * returning futures for the writer to compose with its blob writes. every fetch has a
+ * connect timeout, a read timeout and an overall deadline, and is abandoned past
+ * MAX_IMAGE_BYTES. the deadline is enforced by a watchdog thread, which disconnects a
+ * fetch that is still running when it expires, even in the middle of a read. the body
+ * is decoded and hashed as it is read, without being copied into a buffer first.
+ *
+ * at most MAX_PER_HOST fetches run against one host at a time; a fetch for a busy host
+ * is put back on the pool rather than holding a thread while it waits. a host that
+ * fails FAILURE_THRESHOLD times in a row is not fetched from again for
+ * HOST_BLOCK_MILLIS, so one bad publisher costs a few timeouts rather than one per
+ * article. hosts unused for HOST_IDLE_MILLIS, and not blocked, are forgotten. bodies
+ * are always read to the end and closed, so the jdk keeps the connections alive for
+ * reuse (http.maxConnections, 5 per host by default).
+ *===============================================================================*/
+public class ImageFetcher {
+
+	//fixed parameters
+	public static final int FETCH_THREADS = 16;
+	public static final int MAX_PER_HOST = 4;
+	public static final int CONNECT_TIMEOUT_MILLIS = 3*Main.MILLIS_PER_SEC;
+	public static final int READ_TIMEOUT_MILLIS = 5*Main.MILLIS_PER_SEC;
+	public static final int DEADLINE_MILLIS = 10*Main.MILLIS_PER_SEC;
+	public static final int MAX_IMAGE_BYTES = 8*1024*1024;
+	public static final int FAILURE_THRESHOLD = 3;
+	public static final int HOST_BLOCK_MILLIS = 10*Main.MILLIS_PER_MIN;
+	public static final int HOST_IDLE_MILLIS = 5*Main.MILLIS_PER_MIN;
+	private static final int HOST_BUSY_RETRY_MILLIS = 50;
+	private static final int IMAGE_BUFFER_BYTES = 16*1024;
+
+	/*================================================================================
+	 * FetchedImage: a decoded image, with the content hash of the bytes it was read from.
+	 *===============================================================================*/
+	public static class FetchedImage {
+		public BufferedImage image;
+		public String hash;
+	}
+
+	protected static class HostState {
+		final Semaphore permits = new Semaphore(MAX_PER_HOST);
+		int consecutiveFailures = 0;
+		long blockedUntil = 0;
+		long lastUsed = 0;
+	}
+
+	private final ScheduledExecutorService pool;
+	//runs the fetch deadlines and the host eviction, so that they are not delayed
+	//when every pool thread is busy fetching.
+	private final ScheduledExecutorService watchdog;
+	private final ConcurrentHashMap<String,HostState> hosts =
+			new ConcurrentHashMap<String,HostState>();
+
+	//metrics
+	private final AtomicLong fetchCount = new AtomicLong(0);
+	private final AtomicLong failureCount = new AtomicLong(0);
+	private final AtomicLong blockedCount = new AtomicLong(0);
+
+	/*================================================================================
+	 * ImageFetcher
+	 *===============================================================================*/
+	public ImageFetcher() {
+		pool = Executors.newScheduledThreadPool(FETCH_THREADS, r -> {
+			Thread t = new Thread(r);
+			t.setDaemon(true);
+			return t;
+		});
+		watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r);
+			t.setDaemon(true);
+			return t;
+		});
+		watchdog.scheduleWithFixedDelay(this::evictIdleHosts, HOST_IDLE_MILLIS, 
+				HOST_IDLE_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	/*================================================================================
+	 * fetch: returns a future for the decoded image at 'imageUrl'. the future fails if
+	 * the url's host is blocked, or if the image cannot be fetched or decoded.
+	 *===============================================================================*/
+	public CompletableFuture<FetchedImage> fetch(String imageUrl) {
+		CompletableFuture<FetchedImage> result = new CompletableFuture<FetchedImage>();
+		URL url;
+		try {
+			url = new URL(imageUrl);
+		} catch (Exception e) {
+			result.completeExceptionally(e);
+			return result;
+		}
+		HostState host = hosts.compute(url.getHost(), (h, state) -> {
+			if (state == null) { state = new HostState(); }
+			synchronized (state) { state.lastUsed = System.currentTimeMillis(); }
+			return state;
+		});
+		pool.execute(() -> attempt(url, host, result));
+		return result;
+	}
+	/*================================================================================
+	 * attempt: fetches if the host is below its limit, otherwise tries again shortly.
+	 *===============================================================================*/
+	protected void attempt(URL url, HostState host, CompletableFuture<FetchedImage> result) {
+
+		if (result.isDone()) { return; }
+		synchronized (host) {
+			if (System.currentTimeMillis() < host.blockedUntil) {
+				blockedCount.incrementAndGet();
+				result.completeExceptionally(new Exception("host blocked after " +
+						FAILURE_THRESHOLD + " failures: " + url.getHost()));
+				return;
+			}
+		}
+		if (!host.permits.tryAcquire()) {
+			pool.schedule(() -> attempt(url, host, result), HOST_BUSY_RETRY_MILLIS,
+					TimeUnit.MILLISECONDS);
+			return;
+		}
+
+		try {
+			fetchCount.incrementAndGet();
+			FetchedImage fetched = read(url);
+			recordResult(host, true);
+			result.complete(fetched);
+		} catch (Exception e) {
+			failureCount.incrementAndGet();
+			recordResult(host, false);
+			result.completeExceptionally(e);
+		} finally {
+			host.permits.release();
+		}
+	}
+	/*================================================================================
+	 * read: fetches an image within DEADLINE_MILLIS. an http fetch still running at the
+	 * deadline is disconnected by the watchdog, which fails whatever call it is blocked
+	 * in.
+	 *===============================================================================*/
+	protected FetchedImage read(URL url) throws Exception {
+
+		URLConnection connection = url.openConnection();
+		connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+		connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+		
+		AtomicBoolean expired = new AtomicBoolean(false);
+		ScheduledFuture<?> deadline = null;
+		if (connection instanceof HttpURLConnection) {
+			HttpURLConnection http = (HttpURLConnection) connection;
+			deadline = watchdog.schedule(() -> {
+				expired.set(true);
+				http.disconnect();
+			}, DEADLINE_MILLIS, TimeUnit.MILLISECONDS);
+		}
+		try {
+			return read(url, connection);
+		} catch (Exception e) {
+			if (expired.get()) {
+				throw new Exception("image deadline exceeded (" + DEADLINE_MILLIS + 
+						" mls): " + url, e);
+			}
+			throw e;
+		} finally {
+			if (deadline != null) { deadline.cancel(false); }
+		}
+	}
+	/*================================================================================
+	 * read: decodes the image from an open connection, hashing its body as it is read. 
+	 * responses that are errors, are not images, or are larger than MAX_IMAGE_BYTES, are 
+	 * rejected before they are read in full. the body is always read to the end, so that
+	 * the hash covers all of it and the connection can be reused.
+	 *===============================================================================*/
+	protected static FetchedImage read(URL url, URLConnection connection) throws Exception {
+
+		if (connection instanceof HttpURLConnection) {
+			HttpURLConnection http = (HttpURLConnection) connection;
+			int status = http.getResponseCode();
+			if (status >= 400) {
+				InputStream error = http.getErrorStream();
+				if (error != null) { error.close(); }
+				throw new Exception("http " + status + ": " + url);
+			}
+		}
+		String contentType = connection.getContentType();
+		long contentLength = connection.getContentLengthLong();
+
+		try (InputStream in = connection.getInputStream()) {
+			if (contentType != null && 
+					!contentType.trim().toLowerCase(Locale.ROOT).startsWith("image/")) {
+				throw new Exception("not an image (" + contentType + "): " + url);
+			}
+			if (contentLength > MAX_IMAGE_BYTES) {
+				throw new Exception("image too large (" + contentLength + " bytes): " + url);
+			}
+			MessageDigest digest = ContentHash.newDigest();
+			InputStream body = new CappedInputStream(new DigestInputStream(in, digest), url);
+			FetchedImage fetched = new FetchedImage();
+			fetched.image = ImageIO.read(body);
+			byte[] rest = new byte[IMAGE_BUFFER_BYTES];
+			while (body.read(rest) >= 0) { }
+			if (fetched.image == null) { throw new Exception("unreadable image (" + url + ")"); }
+			fetched.hash = ContentHash.hex(digest.digest());
+			return fetched;
+		}
+	}
+	/*================================================================================
+	 * CappedInputStream: fails a read once more than MAX_IMAGE_BYTES have been read. 
+	 * skipped bytes are read, so that they are hashed.
+	 *===============================================================================*/
+	protected static class CappedInputStream extends FilterInputStream {
+		private final URL url;
+		private long count = 0;
+
+		CappedInputStream(InputStream in, URL url) {
+			super(in);
+			this.url = url;
+		}
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b >= 0) { counted(1); }
+			return b;
+		}
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int read = super.read(b, off, len);
+			if (read > 0) { counted(read); }
+			return read;
+		}
+		@Override
+		public long skip(long n) throws IOException {
+			byte[] skipped = new byte[(int) Math.min(n, IMAGE_BUFFER_BYTES)];
+			int read = n > 0 ? read(skipped, 0, skipped.length) : 0;
+			return read < 0 ? 0 : read;
+		}
+		@Override
+		public boolean markSupported() {
+			return false;
+		}
+		private void counted(long read) throws IOException {
+			count += read;
+			if (count > MAX_IMAGE_BYTES) {
+				throw new IOException("image too large (over " + MAX_IMAGE_BYTES + 
+						" bytes): " + url);
+			}
+		}
+	}
+	/*================================================================================
+	 * recordResult: updates a host's failure memory, blocking it once it has failed
+	 * FAILURE_THRESHOLD times in a row.
+	 *===============================================================================*/
+	protected void recordResult(HostState host, boolean success) {
+		synchronized (host) {
+			if (success) {
+				host.consecutiveFailures = 0;
+			} else if (++host.consecutiveFailures >= FAILURE_THRESHOLD) {
+				host.consecutiveFailures = 0;
+				host.blockedUntil = System.currentTimeMillis() + HOST_BLOCK_MILLIS;
+			}
+		}
+	}
+
+	/*================================================================================
+	 * evictIdleHosts: forgets hosts that have not been fetched from for HOST_IDLE_MILLIS,
+	 * have no fetch in progress, and are not blocked. removal is atomic with the lookup
+	 * in fetch, so a host is never evicted between being looked up and being used.
+	 *===============================================================================*/
+	protected void evictIdleHosts() {
+		long now = System.currentTimeMillis();
+		for (String name: hosts.keySet()) {
+			hosts.computeIfPresent(name, (h, state) -> {
+				synchronized (state) {
+					boolean idle = now - state.lastUsed >= HOST_IDLE_MILLIS &&
+							state.permits.availablePermits() == MAX_PER_HOST;
+					return idle && now >= state.blockedUntil ? null : state;
+				}
+			});
+		}
+	}
+
+	/*================================================================================
+	 * metrics
+	 *===============================================================================*/
+	public long fetchCount() {
+		return fetchCount.get();
+	}
+	public long failureCount() {
+		return failureCount.get();
+	}
+	public long blockedCount() {
+		return blockedCount.get();
+	}
+	public int hostCount() {
+		return hosts.size();
+	}
+	public int blockedHostCount() {
+		long now = System.currentTimeMillis();
+		int blocked = 0;
+		for (HostState host: hosts.values()) {
+			synchronized (host) {
+				if (now < host.blockedUntil) { blocked++; }
+			}
+		}
+		return blocked;
+	}
+
+}
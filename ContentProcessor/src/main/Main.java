@@ -1,17 +1,13 @@
 package main;
 
 import java.text.DecimalFormat;
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Queue;
 import java.util.Set;
-import java.util.Vector;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
+import Filters.DictionaryRefresher;
 import Filters.FilterOperator;
 import blob.moreover.MoreoverBlobOperator;
 import dbconnect.general.document_attributes_statements;
@@ -19,37 +15,45 @@ import dbconnect.general.document_relation_statements;
 import dbconnect.general.document_statements;
 import dbconnect.main.DBConnect;
 import queue.moreover.MoreoverQueueOperator;
-import xmlparser.AuxFileHandling.FieldChainInterpreter;
-import xmlparser.Types.FieldChain;
 
 
 //TODO: side effect checks.
-//TODO: reread databse tables every hour or so.
 /*
  * TODO: change DB connection to local for server version.
  * TODO: logging/send emails on exceptions.
  * 		azure log management/log analytics. log4j.
  * TODO: blobUrls aren't actually working. look into this.
- * TODO: when filtering, check words that appear surrounded by spaces/punctuation, so that we aren't
- * 		reading instances where the keyword is part of a bigger word.
 */
 /*================================================================================
  *ContentProcessor
  *
  *This program creates a thread pool where each thread has a corresponding queue in
  *Azure Storage. Each thread continuously reads moreover articles from its assigned
- *queue and checks them against a set of criteria for relevance.
+ *queue and hands them to a second pool, one thread per core, which checks them against
+ *a set of criteria for relevance.
  *
  *There are two general areas where filtering takes place. The first is in this main
  *class, when reading in the master "generic names" list and "product list" from 
  *the database. In specifying which of these we want to look at, discretion is
- *applied. The second place is in the QueueReaderRunnable class, exclusively in the
- *checkRelevantArticle function.
+ *applied. The second place is in the ArticleMatcherRunnable class, exclusively in the
+ *checkSourceRelevance and checkContentRelevance functions.
+ *
+ *options (java -D<name>=<value>):
+ *
+ *keywordPrefilter=true	enables the horizontal keyword prefilter, reading the list at
+ *		keywordListPath (default KEYWORD_LIST_PATH). off by default, even if the file
+ *		exists; the match threshold is the first program argument.
+ *matchWords=true	matches dictionary terms only as whole words, between spaces or
+ *		punctuation, rather than as part of a bigger word (FilterOperator.MATCH_WORD).
+ *articleExtraction=xml	extracts articles with the original XMLOperator path
+ *		(XMLArticleExtractor) instead of ArticleExtractor. the two can be compared on
+ *		recorded articles with ExtractorParityCheck.
  *
  *known edge cases:
  *
  *1. queueReader hits end of queue while querier is entering into queue, resulting
- *		in a possible split message misalignment.
+ *		in a possible split message misalignment. readers do not read the last
+ *		QueueDepthMonitor.TAIL_MESSAGES of a queue until it stops growing.
  *===============================================================================*/
 
 public class Main {
@@ -57,37 +61,81 @@ public class Main {
 	//thread identifier
 	public static final String mainThreadStamp = "(reader main) ";
 	
-	public static Queue<MoreoverArticle> relevantArticleQueue = new LinkedList<MoreoverArticle>();
-	public static Semaphore relevantArticleQueueLock = new Semaphore(1,true);	
+	//raw articles read from the queues, waiting to be matched. see QueueReaderRunnable.
+	public static BlockingQueue<QueuedArticle> articleHandoff = 
+			new ArrayBlockingQueue<QueuedArticle>(Main.ARTICLE_HANDOFF_CAPACITY);
+	
+	//relevant articles waiting to be written. filled by the matchers, drained only by the
+	//WriterRunnable. when full, matchers block, and so do the readers waiting on
+	//their messages.
+	public static MpscRingBuffer<MoreoverArticle> relevantArticleQueue = 
+			new MpscRingBuffer<MoreoverArticle>(Main.RELEVANT_ARTICLE_CAPACITY);
 	
 	public static FilterOperator filter = new FilterOperator();
+	public static DictionaryRefresher dictionaryRefresher = new DictionaryRefresher();
+	public static QueueDepthMonitor queueDepthMonitor = new QueueDepthMonitor();
+	public static ImageFetcher imageFetcher = new ImageFetcher();
+	
+	//blob urls of images already written, by remote url. persisted at 
+	//BLOB_URL_CACHE_PATH; override with -DblobUrlCachePath=<file>, or empty to disable.
+	public static BlobUrlCache blobUrlCache = new BlobUrlCache(Main.BLOB_URL_CACHE_CAPACITY,
+			Main.BLOB_URL_CACHE_TTL_MILLIS, 
+			System.getProperty("blobUrlCachePath", Main.BLOB_URL_CACHE_PATH).isEmpty() ? null :
+					System.getProperty("blobUrlCachePath", Main.BLOB_URL_CACHE_PATH));
+	//blob urls by container and content hash, so identical payloads are written once.
+	//persisted at BLOB_INDEX_PATH; override with -DblobIndexPath=<file>, or empty.
+	public static BlobUrlCache blobIndex = new BlobUrlCache(Main.BLOB_INDEX_CAPACITY,
+			Main.BLOB_INDEX_TTL_MILLIS, 
+			System.getProperty("blobIndexPath", Main.BLOB_INDEX_PATH).isEmpty() ? null :
+					System.getProperty("blobIndexPath", Main.BLOB_INDEX_PATH));
+	
+	//database connections for the filters, the writer and maintenance. the pool sizes 
+	//may be overridden with -DdbPoolMinIdle=<n> and -DdbPoolMaxActive=<n>.
+	public static DBConnectPool dbPool = new DBConnectPool(
+			Integer.getInteger("dbPoolMinIdle", Main.DB_POOL_MIN_IDLE),
+			Integer.getInteger("dbPoolMaxActive", Main.DB_POOL_MAX_ACTIVE),
+			Main.DB_POOL_LEAK_MILLIS);
 	
-	public static final List<FieldChain> chainList = (new FieldChainInterpreter()).GetChainsDirect(
-			new ArrayList<>(Arrays.asList( 
-			"TEXT,content",
-			"TEXT,estimatedPublishedDate",
-			"TEXT,location,country",
-			"TEXT,publishedDate",
-			"TEXT,sequenceId",
-			"TEXT,source,category",
-			"TEXT,source,editorialRank",
-			"TEXT,source,feed,imageUrl",
-			"TEXT,source,homeUrl",
-			"TEXT,source,id",
-			"TEXT,source,name",
-			"TEXT,title"
-	)));
-	public static FieldChain imageUrlChain;
-	public static FieldChain urlChain;
+	//compiled article field paths, shared by all matchers. see ArticleExtractor. with
+	//-DarticleExtraction=xml, the original XMLOperator path is used instead.
+	public static final ArticleExtractor extractor = new ArticleExtractor();
+	public static final XMLArticleExtractor xmlExtractor = 
+			Main.ARTICLE_EXTRACTION_XML.equals(System.getProperty("articleExtraction")) ? 
+					new XMLArticleExtractor() : null;
 	
 	//fixed parameters
 	public static final int QUEUECOUNT = 20;
+	//queue i/o and matching are sized separately: readers per queue, and matchers per core.
+	//readers of one queue take turns, since a queue is only read by one thread at a time.
+	public static final int READERS_PER_QUEUE = 1;
+	public static final int MATCHERCOUNT = Runtime.getRuntime().availableProcessors();
+	//each reader has at most one message in the handoff
+	public static final int ARTICLE_HANDOFF_CAPACITY = QUEUECOUNT*READERS_PER_QUEUE;
+	public static final int RELEVANT_ARTICLE_CAPACITY = 4096;
+	public static final int WRITER_FLUSH_ARTICLES = WriterRunnable.WRITE_LIMIT;
 	public static final int MILLIS_PER_SEC = 1000;
 	public static final int MILLIS_PER_MIN = 60*MILLIS_PER_SEC;
 	public static final int MILLIS_PER_HOUR = 60*MILLIS_PER_MIN;
 	public static final int MILLIS_PER_DAY = 24*MILLIS_PER_HOUR;
 	public static final int THREAD_SLEEP_TIME_MILLIS = 1*MILLIS_PER_MIN;
 	public static final int THREAD_SLEEP_TIME_MILLIS_SHORT = 1000;
+	public static final int DICTIONARY_REFRESH_MILLIS = 1*MILLIS_PER_HOUR;
+	public static final int QUEUE_DEPTH_REFRESH_MILLIS = 5*MILLIS_PER_SEC;
+	public static final long WRITER_FLUSH_MILLIS = 10*MILLIS_PER_SEC;
+	public static final int BLOB_URL_CACHE_CAPACITY = 50000;
+	public static final long BLOB_URL_CACHE_TTL_MILLIS = MILLIS_PER_DAY;
+	public static final String BLOB_URL_CACHE_PATH = "moreover-bloburl.cache";
+	public static final int BLOB_INDEX_CAPACITY = 200000;
+	public static final long BLOB_INDEX_TTL_MILLIS = 30L*MILLIS_PER_DAY;
+	public static final String BLOB_INDEX_PATH = "moreover-blob.index";
+	public static final int DB_POOL_MIN_IDLE = 2;
+	public static final int DB_POOL_MAX_ACTIVE = 8;
+	public static final long DB_POOL_LEAK_MILLIS = 10*MILLIS_PER_MIN;
+	public static final String DICTIONARY_SNAPSHOT_PATH = "moreover-dictionary.snapshot";
+	public static final String ARTICLE_EXTRACTION_XML = "xml";
+	//keyword list for the horizontal prefilter, when enabled with -DkeywordPrefilter=true.
+	//override with -DkeywordListPath=<file>
+	public static final String KEYWORD_LIST_PATH = "medicalKeyWordList.txt";
 	
 	public static long exceptionCountLast;
 	public static long articleCountLast;
@@ -107,62 +155,96 @@ public class Main {
 				printToConsole("invalid argument. defaulting keyword match threshold to 3"); 
 			}
 		}
+		if (Boolean.getBoolean("matchWords")) {
+			filter.matchMode = FilterOperator.MATCH_WORD;
+			printToConsole("matching whole words only");
+		}
+		if (xmlExtractor != null) {
+			printToConsole("extracting articles with XMLOperator");
+		}
 		
 		//initialize map so all runnables can be accurately referenced
 		HashMap<Integer,QueueReaderRunnable> runnableMap = 
 				new HashMap<Integer,QueueReaderRunnable>();
 		HashMap<Integer,Thread> threadMap = new HashMap<Integer, Thread>();
+		HashMap<Integer,ArticleMatcherRunnable> matcherMap = 
+				new HashMap<Integer,ArticleMatcherRunnable>();
+		HashMap<Integer,Thread> matcherThreadMap = new HashMap<Integer, Thread>();
 				
 		long startTime = System.currentTimeMillis();
 		
 		try {
 			
-			//add chains to list that need to be specifically referenced later on. this is required
-			//becuse they have the same field name ('url'), so the regular map method of retreiving
-			//the data won't work.
-			imageUrlChain = (new FieldChainInterpreter()).GetSingleFieldChain("TEXT,media,image,url");
-			urlChain = (new FieldChainInterpreter()).GetSingleFieldChain("TEXT,url");
-			chainList.add(imageUrlChain);
-			chainList.add(urlChain);
-			
+			filter.snapshotPath = DICTIONARY_SNAPSHOT_PATH;
+			if (Boolean.getBoolean("keywordPrefilter")) {
+				filter.keywordListPath = System.getProperty("keywordListPath", KEYWORD_LIST_PATH);
+			}
 			filter.init(mainThreadStamp, keyWordMatchThreshold);
 			
-			//initialize and execute the queue readers, and store in map
-			for (int i = 0; i < QUEUECOUNT; i++) {
+			//reread database tables in the background, swapping in the new dictionaries.
+			//if the dictionaries were mapped from the snapshot file, refresh immediately.
+			dictionaryRefresher.filter = filter;
+			dictionaryRefresher.refreshMillis = DICTIONARY_REFRESH_MILLIS;
+			Thread refresherThread = new Thread(dictionaryRefresher);
+			refresherThread.setDaemon(true);
+			refresherThread.start();
+			if (filter.loadedFromSnapshot) {
+				dictionaryRefresher.requestRefresh();
+			}
+			
+			//track queue depths for the readers, so that idle readers can take work from
+			//the deepest queue.
+			queueDepthMonitor.queueCount = QUEUECOUNT;
+			queueDepthMonitor.refreshMillis = QUEUE_DEPTH_REFRESH_MILLIS;
+			Thread depthMonitorThread = new Thread(queueDepthMonitor);
+			depthMonitorThread.setDaemon(true);
+			depthMonitorThread.start();
+			
+			//initialize and execute the matchers and queue readers, and store in maps
+			for (int i = 0; i < MATCHERCOUNT; i++) {
+				executeMatcher(i, matcherMap, matcherThreadMap);
+			}
+			for (int i = 0; i < QUEUECOUNT*READERS_PER_QUEUE; i++) {
 				executeQueueReader(i, runnableMap, threadMap);
 			}
 						
-			//every minute, evaluate status of QueueReader threads, and write all gathered 
-			//information to database and azure cloud storage.
+			//restore the blob urls written before the last restart.
+			try {
+				printToConsole("loaded " + blobUrlCache.load() + " cached image blob urls");
+				printToConsole("loaded " + blobIndex.load() + " blob index entries");
+			} catch (Exception e) {
+				printToConsole("could not load blob url caches: " + e.getMessage());
+			}
+			
+			//write relevant articles continuously, flushing by count or by age.
 			WriterRunnable writer = new WriterRunnable();
-			writer.threadCompleted = true;
-			long localExceptionCount = 0;
+			Thread writerThread = executeWriter(writer);
+			
+			//every minute, evaluate status of all threads, and restart any that have died.
 			while (true) {
-				long startWait = System.currentTimeMillis();
-				
-				//check status of previous writer. wait until completion to run the next
-				while (!(writer.threadCompleted || writer.exceptionFound)) {
-					Thread.sleep(THREAD_SLEEP_TIME_MILLIS_SHORT);
-				} if (writer.exceptionFound) { localExceptionCount++; }
+				Thread.sleep(THREAD_SLEEP_TIME_MILLIS);
 				
-				//once previous is complete, wait prescribed time, unless the queue is very full.
-				if (Main.getCurrentRunTime(startWait) < THREAD_SLEEP_TIME_MILLIS ||
-						relevantArticleQueue.size() < WriterRunnable.WRITE_LIMIT) {
-					int waitTime = THREAD_SLEEP_TIME_MILLIS - (int) Main.getCurrentRunTime(startWait);
-					if (waitTime > 0) {
-						Thread.sleep(waitTime); 
-					}
+				printThreadPoolStatus(runnableMap, matcherMap, writer, startTime);
+				try { 
+					blobUrlCache.save(); 
+					blobIndex.save();
+				} catch (Exception e) {
+					printToConsole("could not save blob url caches: " + e.getMessage());
 				}
 				
-				printThreadPoolStatus(runnableMap, startTime, localExceptionCount);
-				
 				//check for dead threads, and re-execute if any are found.
 				Set<Integer> deadList = checkDeadThreads(threadMap);
 				for (Integer i: deadList) {
 					executeQueueReader(i,runnableMap,threadMap);
 				}
-				
-				writer = executeWriter();
+				Set<Integer> deadMatcherList = checkDeadThreads(matcherThreadMap);
+				for (Integer i: deadMatcherList) {
+					executeMatcher(i,matcherMap,matcherThreadMap);
+				}
+				if (!writerThread.isAlive()) {
+					printToConsole("found dead writer thread");
+					writerThread = executeWriter(writer);
+				}
 			}
 			
 		} catch (Exception e) {
@@ -194,51 +276,62 @@ public class Main {
 	}
 	/*================================================================================
 	 * executeQueuReader: initializes and executes a queue reader, recording the runnable
-	 * and thread objects in the argument maps.
+	 * and thread objects in the argument maps. readers are numbered across all queues,
+	 * READERS_PER_QUEUE per queue.
 	 *===============================================================================*/
-	protected static void executeQueueReader(int queueNum, 
+	protected static void executeQueueReader(int readerIndex, 
 	HashMap<Integer,QueueReaderRunnable> runnableMap, HashMap<Integer,Thread> threadMap) 
 	throws Exception {	
 		QueueReaderRunnable reader = new QueueReaderRunnable();
-		reader.queueNum = queueNum;
-		reader.filter = filter;
-		reader.chainList = chainList;
-		reader.imageUrlKeyChain = imageUrlChain;
-		reader.urlKeyChain = urlChain;
-
-		reader.relevantArticleQueue = relevantArticleQueue;
-		reader.relevantArticleQueueLock = relevantArticleQueueLock;
+		reader.queueNum = readerIndex % QUEUECOUNT;
+		reader.readerNum = readerIndex / QUEUECOUNT;
+		reader.articleHandoff = articleHandoff;
+		reader.depthMonitor = queueDepthMonitor;
 		
 		Thread t = new Thread(reader);
-		threadMap.put(queueNum, t);
-		runnableMap.put(queueNum, reader);
+		threadMap.put(readerIndex, t);
+		runnableMap.put(readerIndex, reader);
 		
 		t.start();	
 	}
 	/*================================================================================
-	 * executeWriter: initializes, executes and returns a WriterRunnable
+	 * executeMatcher: initializes and executes an article matcher, recording the runnable
+	 * and thread objects in the argument maps.
 	 *===============================================================================*/
-	protected static WriterRunnable executeWriter() throws Exception {
+	protected static void executeMatcher(int matcherNum, 
+	HashMap<Integer,ArticleMatcherRunnable> matcherMap, HashMap<Integer,Thread> threadMap) 
+	throws Exception {	
+		ArticleMatcherRunnable matcher = new ArticleMatcherRunnable();
+		matcher.matcherNum = matcherNum;
+		matcher.articleHandoff = articleHandoff;
+		matcher.filter = filter;
+		matcher.extractor = extractor;
+		matcher.xmlExtractor = xmlExtractor;
+
+		matcher.relevantArticleQueue = relevantArticleQueue;
 		
-		//dequeue up to 100 relevant articles and put into a list
-		List<MoreoverArticle> writeList = new Vector<MoreoverArticle>();
-		relevantArticleQueueLock.acquire();
-		for (int i = 0; i < WriterRunnable.WRITE_LIMIT; i++) {
-			MoreoverArticle nextArticle = relevantArticleQueue.poll();
-			if (nextArticle==null) {
-				break;
-			}
-			writeList.add(nextArticle);
-		}
-		relevantArticleQueueLock.release();
+		Thread t = new Thread(matcher);
+		threadMap.put(matcherNum, t);
+		matcherMap.put(matcherNum, matcher);
 		
-		//initialize and execute writer
-		WriterRunnable writer = new WriterRunnable();
-		writer.writeList = writeList;
+		t.start();	
+	}
+	/*================================================================================
+	 * executeWriter: initializes and executes the writer, returning its thread. the
+	 * flush size and age may be overridden with -DwriterFlushArticles=<n> and
+	 * -DwriterFlushMillis=<mls>.
+	 *===============================================================================*/
+	protected static Thread executeWriter(WriterRunnable writer) throws Exception {
+		writer.relevantArticleQueue = relevantArticleQueue;
 		writer.filter = filter;
+		writer.imageFetcher = imageFetcher;
+		writer.blobUrlCache = blobUrlCache;
+		writer.blobIndex = blobIndex;
+		writer.flushArticles = Integer.getInteger("writerFlushArticles", WRITER_FLUSH_ARTICLES);
+		writer.flushMillis = Long.getLong("writerFlushMillis", WRITER_FLUSH_MILLIS);
 		Thread writerThread = new Thread(writer);
 		writerThread.start();
-		return writer;
+		return writerThread;
 	}
 	/*================================================================================
 	 * getCurrentRunTime
@@ -305,20 +398,46 @@ public class Main {
 	 * printThreadPoolStatus: aggregates and prints thread pool statistics
 	 *===============================================================================*/
 	protected static void printThreadPoolStatus(HashMap<Integer, QueueReaderRunnable> runnableMap,
-	long startTime, long localExceptionCount) throws Exception {
-		long exceptionCountSum = localExceptionCount;
+	HashMap<Integer, ArticleMatcherRunnable> matcherMap, WriterRunnable writer, 
+	long startTime) throws Exception {
+		long exceptionCountSum = writer.exceptionCount;
 		long articleCountSum = 0;
 		long relevantArticleCountSum = 0;
+		long stolenArticleCountSum = 0;
 		for (QueueReaderRunnable r: runnableMap.values()) {
 			exceptionCountSum+=r.exceptionCount;
 			articleCountSum+=r.articleCount;
-			relevantArticleCountSum+=r.relevantArticleCount;
+			stolenArticleCountSum+=r.stolenArticleCount;
+		}
+		for (ArticleMatcherRunnable m: matcherMap.values()) {
+			exceptionCountSum+=m.exceptionCount;
+			relevantArticleCountSum+=m.relevantArticleCount;
 		}
 		printCurrentRunTime(startTime, "current run time");
 		printToConsole("total article count: " + articleCountSum);
 		printToConsole("total relevant article count: " + relevantArticleCountSum);
 		printToConsole("articles since last report: " + (articleCountSum - articleCountLast));
-		printToConsole("current relevantArticleQueue size: " + relevantArticleQueue.size());
+		printToConsole("articles read from other queues: " + stolenArticleCountSum);
+		printToConsole("current articleHandoff size: " + articleHandoff.size());
+		printToConsole("current relevantArticleQueue size: " + relevantArticleQueue.size() + 
+				"/" + relevantArticleQueue.capacity() + " (high water mark: " + 
+				relevantArticleQueue.highWaterMark() + ")");
+		printToConsole("articles written: " + writer.articleCount + " (" + 
+				writer.flushCount + " flushes)");
+		printToConsole("db pool: " + dbPool.activeCount() + "/" + dbPool.maxActive() + " active, " + 
+				dbPool.idleCount() + " idle, " + dbPool.connectCount() + " connects, " + 
+				"wait " + dbPool.averageWaitMillis() + " mls avg / " + 
+				dbPool.maxWaitMillis() + " mls max over " + dbPool.borrowCount() + 
+				" borrows, " + dbPool.checkLeaks() + " held past leak limit, " + 
+				dbPool.abandonCount() + " abandoned");
+		printToConsole("image fetches: " + imageFetcher.fetchCount() + " (" + 
+				imageFetcher.failureCount() + " failed, " + imageFetcher.blockedCount() + 
+				" skipped for " + imageFetcher.blockedHostCount() + " blocked hosts, " + 
+				imageFetcher.hostCount() + " hosts tracked)");
+		printToConsole("image blob url cache: " + blobUrlCache.size() + " entries, " + 
+				blobUrlCache.hitCount() + " hits, " + blobUrlCache.missCount() + " misses");
+		printToConsole("blob index: " + blobIndex.size() + " entries, " + 
+				blobIndex.hitCount() + " duplicate writes avoided");
 		printToConsole("exception count: " + exceptionCountSum);
 		
 		articleCountLast = articleCountSum;
@@ -358,6 +477,8 @@ public class Main {
 	 *===============================================================================*/
 	protected static boolean clearBlobContainers() {
 		MoreoverBlobOperator blobOp = new MoreoverBlobOperator();
+		blobUrlCache.clear();
+		blobIndex.clear();
 		try {
 			blobOp.connect(MoreoverBlobOperator.CONTENT_CONTAINER);
 			blobOp.clearContainer(MoreoverBlobOperator.CONTENT_CONTAINER);
@@ -383,15 +504,20 @@ public class Main {
 	 * clearFromDatabase: clears all moreover information from database
 	 *===============================================================================*/
 	protected static boolean clearFromDatabase() {
-		DBConnect con = new DBConnect();
 		try {
-			connectToDatabase(con);
-			con.ExecuteStatement(document_attributes_statements.truncate());
-			printToConsole("attributes truncated.");
-			con.ExecuteStatement(document_relation_statements.truncate());
-			printToConsole("relations truncated.");
-			con.ExecuteStatement(document_statements.truncate());
-			printToConsole("document truncated.");
+			DBConnect con = dbPool.borrow();
+			try {
+				con.ExecuteStatement(document_attributes_statements.truncate());
+				printToConsole("attributes truncated.");
+				con.ExecuteStatement(document_relation_statements.truncate());
+				printToConsole("relations truncated.");
+				con.ExecuteStatement(document_statements.truncate());
+				printToConsole("document truncated.");
+			} catch (Exception e) {
+				dbPool.discard(con);
+				throw e;
+			}
+			dbPool.commitClose(con);
 		} catch (Exception e) {
 			printToConsole("EXCEPTION (" + e.getMessage() + ")");
 		}
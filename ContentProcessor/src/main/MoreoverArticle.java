@@ -1,7 +1,9 @@
 package main;
 
 import java.sql.Timestamp;
-import java.util.Set;
+
+import Filters.Filter;
+import Filters.SymbolTable;
 
 public class MoreoverArticle {
 	
@@ -22,13 +24,27 @@ public class MoreoverArticle {
     public String sourceLogoUrl;
     public String fullXml;
     
-    public Set<String> drugsFound;
-    public Set<String> conditionsFound;
+    //match results, as symbols of symbolTable
+    public SymbolTable symbolTable;
+    public int[] drugsFound;
+    public int[] conditionsFound;
     public String relevanceValue;
     public String firstDrugFound;
     
     protected boolean isRelevant;
     
+    //normalized view of title and content, computed once on first access. the arrays
+    //are allocated once and kept by reset, so only the first ...Length entries are 
+    //valid; a length of -1 means not yet computed for this article.
+    private char[] normalizedTitle;
+    private char[] normalizedContent;
+    private long[] titleTokens;
+    private long[] contentTokens;
+    private int normalizedTitleLength = -1;
+    private int normalizedContentLength = -1;
+    private int titleTokenCount = -1;
+    private int contentTokenCount = -1;
+    
     public static final String RELEVANCY_TITLE_VAL = "title";
 	public static final String RELEVANCY_CONTENT_VAL = "content";
 	
@@ -52,6 +68,7 @@ public class MoreoverArticle {
 		this.sourceLogoUrl = ref.sourceLogoUrl;
 		this.fullXml = ref.fullXml;
 		
+		symbolTable = null;
 		drugsFound = null;
 		conditionsFound = null;
 	    relevanceValue = null;
@@ -80,6 +97,41 @@ public class MoreoverArticle {
 		this.sourceLogoUrl = sourceLogoUrl;
 		this.fullXml = fullXml;
 		
+		symbolTable = null;
+		drugsFound = null;
+		conditionsFound = null;
+	    relevanceValue = null;
+	    firstDrugFound = null;
+	    isRelevant = false;
+	}
+	/*================================================================================
+	 * reset: clears every field, so that the object can be reused for another article.
+	 * the normalized and token arrays are kept for reuse, and only marked as not yet
+	 * computed. see ExtractionContext.
+	 *===============================================================================*/
+	public void reset() {
+		id = null;
+		sequenceId = 0;
+		title = null;
+		content = null;
+		url = null;
+		sourceId = 0;
+		sourceName = null;
+		sourceUrl = null;
+		country = null;
+		publishDate = null;
+		recordDate = null;
+		category = null;
+		editorialRank = null;
+		imageUrl = null;
+		sourceLogoUrl = null;
+		fullXml = null;
+		normalizedTitleLength = -1;
+		normalizedContentLength = -1;
+		titleTokenCount = -1;
+		contentTokenCount = -1;
+		
+		symbolTable = null;
 		drugsFound = null;
 		conditionsFound = null;
 	    relevanceValue = null;
@@ -98,5 +150,65 @@ public class MoreoverArticle {
 	public boolean relevant() {
 		return isRelevant;
 	}
+	/*================================================================================
+	 * getNormalizedTitle/getNormalizedContent: lowercase alphanumeric view of the title
+	 * and content used by all filters. computed on first access and cached, so the 
+	 * article text is only transformed once regardless of dictionary size. only the 
+	 * first getNormalizedTitleLength/getNormalizedContentLength chars of the returned
+	 * arrays are valid. the arrays are shared, and reused after reset; they must not be
+	 * modified or kept.
+	 *===============================================================================*/
+	public char[] getNormalizedTitle() {
+		if (normalizedTitleLength < 0) {
+			if (normalizedTitle == null) { normalizedTitle = new char[Filter.NORMALIZED_CAPACITY]; }
+			normalizedTitleLength = Filter.normalize(title, normalizedTitle);
+		}
+		return normalizedTitle;
+	}
+	public int getNormalizedTitleLength() {
+		getNormalizedTitle();
+		return normalizedTitleLength;
+	}
+	public char[] getNormalizedContent() {
+		if (normalizedContentLength < 0) {
+			if (normalizedContent == null) { 
+				normalizedContent = new char[Filter.NORMALIZED_CAPACITY]; 
+			}
+			normalizedContentLength = Filter.normalize(content, normalizedContent);
+		}
+		return normalizedContent;
+	}
+	public int getNormalizedContentLength() {
+		getNormalizedContent();
+		return normalizedContentLength;
+	}
+	/*================================================================================
+	 * getTitleTokens/getContentTokens: token hashes of the title and content, used for
+	 * whole word matching. computed on first access and cached, like the normalized view,
+	 * with getTitleTokenCount/getContentTokenCount valid entries.
+	 *===============================================================================*/
+	public long[] getTitleTokens() {
+		if (titleTokenCount < 0) {
+			if (titleTokens == null) { titleTokens = new long[Filter.TOKEN_CAPACITY]; }
+			titleTokenCount = Filter.tokenize(title, Filter.NORMALIZED_CAPACITY, titleTokens);
+		}
+		return titleTokens;
+	}
+	public int getTitleTokenCount() {
+		getTitleTokens();
+		return titleTokenCount;
+	}
+	public long[] getContentTokens() {
+		if (contentTokenCount < 0) {
+			if (contentTokens == null) { contentTokens = new long[Filter.TOKEN_CAPACITY]; }
+			contentTokenCount = Filter.tokenize(content, Filter.NORMALIZED_CAPACITY, 
+					contentTokens);
+		}
+		return contentTokens;
+	}
+	public int getContentTokenCount() {
+		getContentTokens();
+		return contentTokenCount;
+	}
 
 }
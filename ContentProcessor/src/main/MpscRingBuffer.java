@@ -0,0 +1,115 @@
+package main;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/*================================================================================
+ * MpscRingBuffer
+ *
+ * bounded lock free queue for many producer threads and a single consumer thread.
+ * each slot carries a sequence number: producers claim a slot by advancing the shared
+ * tail, then publish the element by advancing the slot's sequence; the consumer takes
+ * elements in order once published. producers never wait on each other except to
+ * retry a claim, and never wait on the consumer unless the buffer is full.
+ *
+ * put blocks while the buffer is full, which is the backpressure for its producers.
+ * occupancy (size) and the highest occupancy seen (highWaterMark) may be read from any
+ * thread. poll must only ever be called from one thread at a time.
+ *===============================================================================*/
+public class MpscRingBuffer<E> {
+
+	private static final long FULL_PARK_NANOS = 1000000;
+
+	private final int capacity;
+	private final int mask;
+	private final AtomicReferenceArray<E> elements;
+	private final AtomicLongArray sequences;
+	private final AtomicLong tail = new AtomicLong(0);
+	private final AtomicLong highWaterMark = new AtomicLong(0);
+	private volatile long head = 0;
+
+	/*================================================================================
+	 * MpscRingBuffer: capacity is rounded up to a power of two.
+	 *===============================================================================*/
+	public MpscRingBuffer(int capacity) {
+		int c = 1;
+		while (c < capacity) { c <<= 1; }
+		this.capacity = c;
+		mask = c - 1;
+		elements = new AtomicReferenceArray<E>(c);
+		sequences = new AtomicLongArray(c);
+		for (int i = 0; i < c; i++) {
+			sequences.set(i, i);
+		}
+	}
+
+	/*================================================================================
+	 * offer: adds an element if there is room. returns false if the buffer is full.
+	 *===============================================================================*/
+	public boolean offer(E element) {
+		if (element == null) { throw new NullPointerException(); }
+		while (true) {
+			long t = tail.get();
+			int slot = (int) t & mask;
+			long diff = sequences.get(slot) - t;
+			if (diff == 0) {
+				if (tail.compareAndSet(t, t + 1)) {
+					elements.set(slot, element);
+					sequences.lazySet(slot, t + 1);
+					recordOccupancy(t + 1 - head);
+					return true;
+				}
+			} else if (diff < 0) {
+				return false;
+			}
+			//slot claimed by another producer since tail was read. retry.
+		}
+	}
+	/*================================================================================
+	 * put: adds an element, waiting while the buffer is full.
+	 *===============================================================================*/
+	public void put(E element) throws InterruptedException {
+		while (!offer(element)) {
+			LockSupport.parkNanos(FULL_PARK_NANOS);
+			if (Thread.interrupted()) { throw new InterruptedException(); }
+		}
+	}
+	/*================================================================================
+	 * poll: removes and returns the oldest element, or null if the buffer is empty.
+	 * single consumer only.
+	 *===============================================================================*/
+	public E poll() {
+		long h = head;
+		int slot = (int) h & mask;
+		if (sequences.get(slot) != h + 1) { return null; }
+		E element = elements.get(slot);
+		elements.lazySet(slot, null);
+		sequences.lazySet(slot, h + capacity);
+		head = h + 1;
+		return element;
+	}
+
+	/*================================================================================
+	 * size: current occupancy. claimed but not yet published slots are included.
+	 *===============================================================================*/
+	public int size() {
+		long size = tail.get() - head;
+		return (int) Math.max(0, Math.min(size, capacity));
+	}
+	public int capacity() {
+		return capacity;
+	}
+	public long highWaterMark() {
+		return highWaterMark.get();
+	}
+
+	private void recordOccupancy(long occupancy) {
+		long mark;
+		while (occupancy > (mark = highWaterMark.get())) {
+			if (highWaterMark.compareAndSet(mark, occupancy)) { return; }
+		}
+	}
+
+}
@@ -0,0 +1,146 @@
+package main;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import queue.moreover.MoreoverQueueOperator;
+
+/*================================================================================
+ * QueueDepthMonitor
+ *
+ * this class is designed to run indefinitely.
+ *
+ * reads the length of every moreover queue every refreshMillis, and keeps the results
+ * as a shared snapshot, so that only this thread pays for length calls. from each
+ * length it sets how many messages the readers of that queue may take (see claim),
+ * and readers steal from the queue with the most to take when their own has none.
+ *
+ * a queue that was enqueued to since the previous refresh may still be mid enqueue, and
+ * its last messages may be the first parts of a split message (see Main, known edge
+ * case 1). so the last TAIL_MESSAGES of a growing queue are held back, and only
+ * released once a refresh finds nothing new was enqueued. a queue is therefore drained
+ * to the end within two refreshes of its last enqueue, however few messages it holds.
+ *===============================================================================*/
+public class QueueDepthMonitor implements Runnable {
+
+	//parameters
+	public int queueCount = -1;
+	public long refreshMillis = -1;
+
+	//return values
+	public long refreshCount = 0;
+	public long exceptionCount = 0;
+
+	//fixed parameters
+	public static final int TAIL_MESSAGES = 8;
+
+	public String threadStamp = "(reader depth) ";
+
+	//per queue: messages readers may still claim, and messages read in total.
+	private volatile AtomicLongArray available = new AtomicLongArray(0);
+	private volatile AtomicLongArray consumed = new AtomicLongArray(0);
+
+	/*================================================================================
+	 * run
+	 *===============================================================================*/
+	@Override
+	public void run() {
+
+		if (queueCount <= 0 || refreshMillis <= 0) {
+			printToConsole("depth monitor not initialized. queueCount: " + queueCount +
+					", refreshMillis: " + refreshMillis);
+			return;
+		}
+
+		MoreoverQueueOperator queueOp = new MoreoverQueueOperator();
+		consumed = new AtomicLongArray(queueCount);
+		available = new AtomicLongArray(queueCount);
+		long[] lastLength = new long[queueCount];
+		long[] lastConsumed = new long[queueCount];
+		try {
+			for (int q = 0; q < queueCount; q++) {
+				queueOp.connectQueue(QueueReaderRunnable.QUEUE_PREFIX + q);
+			}
+		} catch (Exception e) {
+			printToConsole("exception: " + e.getMessage() + ". thread terminated");
+			e.printStackTrace();
+			exceptionCount++;
+			return;
+		}
+
+		printToConsole("running queue depth monitor (every " + refreshMillis + " mls)");
+		while (true) {
+			for (int q = 0; q < queueCount; q++) {
+				try {
+					//messages read before the length call are reflected in it, those read
+					//during or after are subtracted.
+					long readBefore = consumed.get(q);
+					long length = queueOp.getQueueLength(QueueReaderRunnable.QUEUE_PREFIX + q);
+					long enqueued = length - lastLength[q] + (readBefore - lastConsumed[q]);
+					long readSince = consumed.get(q) - readBefore;
+					long held = enqueued > 0 ? TAIL_MESSAGES : 0;
+					available.set(q, Math.max(0, length - held - readSince));
+					lastLength[q] = length;
+					lastConsumed[q] = readBefore;
+				} catch (Exception e) {
+					printToConsole("exception: " + e.getMessage());
+					exceptionCount++;
+				}
+			}
+			refreshCount++;
+			try {
+				Thread.sleep(refreshMillis);
+			} catch (InterruptedException e) {
+				printToConsole("interrupted. thread terminated");
+				return;
+			}
+		}
+	}
+	/*================================================================================
+	 * claim: takes up to 'max' of the messages that may be read from a queue, and
+	 * returns the number taken. 0 until the first refresh.
+	 *===============================================================================*/
+	public int claim(int queueNum, int max) {
+		AtomicLongArray a = available;
+		if (queueNum >= a.length()) { return 0; }
+		long free;
+		int taken;
+		do {
+			free = a.get(queueNum);
+			taken = (int) Math.min(max, free);
+			if (taken <= 0) { return 0; }
+		} while (!a.compareAndSet(queueNum, free, free - taken));
+		return taken;
+	}
+	/*================================================================================
+	 * recordRead: records the number of messages a reader just took from a queue. a
+	 * claim that was not read in full is not returned; the next refresh corrects it.
+	 *===============================================================================*/
+	public void recordRead(int queueNum, int count) {
+		AtomicLongArray c = consumed;
+		if (queueNum < c.length()) { c.addAndGet(queueNum, count); }
+	}
+	/*================================================================================
+	 * deepestQueue: returns the queue other than 'excludeQueue' with the most messages
+	 * that may be claimed, if at least 'minAvailable', or -1 if there is none.
+	 *===============================================================================*/
+	public int deepestQueue(int excludeQueue, long minAvailable) {
+		AtomicLongArray a = available;
+		int deepest = -1;
+		long deepestAvailable = minAvailable - 1;
+		for (int q = 0; q < a.length(); q++) {
+			long free = a.get(q);
+			if (q != excludeQueue && free > deepestAvailable) {
+				deepest = q;
+				deepestAvailable = free;
+			}
+		}
+		return deepest;
+	}
+	/*================================================================================
+	 * printToConsole: prints a string to the console, including thread identification
+	 *===============================================================================*/
+	protected void printToConsole(String statement) {
+		System.out.println(threadStamp + statement);
+	}
+
+}
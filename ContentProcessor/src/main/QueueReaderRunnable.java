@@ -1,18 +1,10 @@
 package main;
 
-import java.sql.Timestamp;
-import java.text.SimpleDateFormat;
-import java.util.Date;
 import java.util.HashMap;
-import java.util.List;
-import java.util.Queue;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.locks.ReentrantLock;
 
-import Filters.FilterOperator;
 import queue.moreover.MoreoverQueueOperator;
-import xmlparser.Operations.XMLOperator;
-import xmlparser.Types.FieldChain;
-import xmlparser.Types.XMLNode;
 
 
 /*================================================================================
@@ -21,38 +13,59 @@ import xmlparser.Types.XMLNode;
  * this class is designed to run indefinitely.
  * 
  * The first try block initializes the queue connection Upon success of that block, the 
- * thread enters an infinite loop. With each iteration, the thread dequeues an article 
- * from  its assigned queue, checks it for relevence, and stores it the global relevant 
- * articles holder.
+ * thread enters an infinite loop. With each iteration, the thread dequeues a batch of
+ * articles from  its assigned queue and hands each to the ArticleMatcherRunnables 
+ * through the articleHandoff. readers only do queue i/o. a message is deleted from its
+ * queue only after a matcher has processed it, so a crash loses no message that was
+ * not yet matched; it is read again once it becomes visible on the queue. since
+ * deleteLast only refers to the last message dequeued, each reader waits for its
+ * message to be processed before dequeuing the next, and has one message in flight.
  * 
- * Note: a single QueueReaderRunnable is assigned to a specific queue in the azure 
- * cloud (denoted by queueNum). The code here and in the QueueOperator are designed 
- * without protection against concurrency in accessing a single queue. So, no two 
- * concurrent threads can operate on the same queue.
+ * Note: each QueueReaderRunnable is assigned to a specific queue in the azure cloud
+ * (denoted by queueNum), and a queue may have several readers (denoted by readerNum).
+ * The code here and in the QueueOperator are designed without protection against
+ * concurrency in accessing a single queue, and do not reassemble a message whose parts
+ * are taken by different readers. So every read of a queue holds that queue's lock
+ * (see queueLocks), whether by one of its own readers or by a reader stealing from it,
+ * and no two threads ever dequeue from the same queue at once.
+ * 
+ * readers make no length calls. how many messages may be read from each queue comes
+ * from the depthMonitor snapshot, which holds back the tail of a queue still being
+ * enqueued to (see Main, known edge case 1, and QueueDepthMonitor). a reader whose
+ * queue has nothing to read may take a batch from the queue with the most to read
+ * (see stealBatch), but only if that queue's lock is free.
  *===============================================================================*/
 public class QueueReaderRunnable implements Runnable {
 		
 	//parameters
 	public int queueNum = -1;
-	public Queue<MoreoverArticle> relevantArticleQueue = null;
-	public Semaphore relevantArticleQueueLock = null;
-	public List<FieldChain> chainList = null;
-	public FieldChain imageUrlKeyChain = null;
-	public FieldChain urlKeyChain = null;
+	public int readerNum = 0;
+	public BlockingQueue<QueuedArticle> articleHandoff = null;
 	public Exception exc = null;	
-	public FilterOperator filter = null;	
+	public QueueDepthMonitor depthMonitor = null;
 	
 	//return values
 	public long exceptionCount = 0;
 	public long articleCount = 0;
-	public long relevantArticleCount = 0;
+	public long stolenArticleCount = 0;
 	
 	//fixed parameters
-	private static final int MIN_QUEUE_SIZE = 400;
-	private static final int SHORT_SLEEP_TIME_MILLIS = 2000;
+	private static final int BATCH_SIZE = 32;
+	private static final int MIN_BACKOFF_MILLIS = 50;
+	private static final int MAX_BACKOFF_MILLIS = 2000;
 	public static final String QUEUE_PREFIX = "moreover-queue-";
 
-		
+	
+	//one lock per queue, held for every read of that queue by any reader
+	private static final ReentrantLock[] queueLocks = new ReentrantLock[Main.QUEUECOUNT];
+	static {
+		for (int q = 0; q < queueLocks.length; q++) { queueLocks[q] = new ReentrantLock(); }
+	}
+	
+	//operators for other queues, connected on first steal
+	private final HashMap<Integer,MoreoverQueueOperator> stealOperators = 
+			new HashMap<Integer,MoreoverQueueOperator>();
+	
 	public String threadStamp;
 	/*================================================================================
 	 * run
@@ -74,43 +87,34 @@ public class QueueReaderRunnable implements Runnable {
 			terminate = true;
 		}
 		
-		//continuously dequeue and process messages
+		//continuously dequeue and hand off messages, in batches. when the assigned queue has
+		//nothing to read, take a batch from the deepest other queue instead. if there is no 
+		//work anywhere, back off exponentially until a read succeeds.
+		long backoffMillis = MIN_BACKOFF_MILLIS;
 		while (!terminate) {
 			try {				
 				
-				while (queueOp.getQueueLength(queueName) < MIN_QUEUE_SIZE) {				
-					Thread.sleep(SHORT_SLEEP_TIME_MILLIS);
+				int count;
+				ReentrantLock lock = queueLocks[queueNum];
+				lock.lock();
+				try {
+					count = readClaimed(queueOp, queueNum);
+				} finally {
+					lock.unlock();
 				}
+				if (count == 0) { count = stealBatch(); }
 				
-				//dequeue next message
-				String nextArticle;
-				try { nextArticle = queueOp.dequeue(queueName); }
-				catch (NullPointerException npe) { nextArticle = null; }
-				if (nextArticle == null) {					
-					continue;
+				if (count > 0) {
+					backoffMillis = MIN_BACKOFF_MILLIS;
+				} else {
+					Thread.sleep(backoffMillis);
+					backoffMillis = Math.min(backoffMillis * 2, MAX_BACKOFF_MILLIS);
 				}
-
-				articleCount++;
-			
-				//extract data and check if relevant
-				MoreoverArticle row = extractData(nextArticle);
-				
-				//if relevant, write to final queue
-				if (filter.checkRelevantArticle(threadStamp, row)) {				
-					//printToConsole("RELEVANT ARTICLE FOUND (" + row.firstDrugFound + ")");
-					enqueueRelevantArticle(row);
-					relevantArticleCount++;
-				}
-				
-				//delete message from queue
-				queueOp.deleteLast(queueName);
 			}
 			catch (Exception e) {
 				//Exceptions here:
 				printToConsole("exception: " + e.getMessage());
 				e.printStackTrace();
-				try { queueOp.deleteLast(queueName); }
-				catch (Exception e1) { printToConsole("exception: failed to delete last queue item"); }
 				exceptionCount+=1;
 			}
 		}
@@ -118,79 +122,98 @@ public class QueueReaderRunnable implements Runnable {
 		printToConsole("thread terminated");
 	}	
 	/*================================================================================
-	 * checkParameters: checks that parameters have been properly initialized and throws
-	 * exception if not.
+	 * readBatch: dequeues up to 'count' messages and hands them to the matchers. each
+	 * message is deleted once a matcher has processed it; a message that fails
+	 * processing is dropped rather than blocking the queue, as before. returns the
+	 * number read.
 	 *===============================================================================*/
-	public void checkParameters() throws Exception {
-		if (queueNum >= Main.QUEUECOUNT || queueNum < 0) { 
-			throw new Exception("queueNum not specified, "
-					+ "or invalid queueNum specified (" + queueNum + ")");
-		} 
-		threadStamp = "(reader queue_" + queueNum + ") ";
-		if (filter == null) {
-			throw new Exception("filter not initialized. value is null (" + queueNum + ")");
-		} else if (chainList == null || imageUrlKeyChain == null || urlKeyChain == null) {
-			throw new Exception("fieldChains not initialized. value is null (" + queueNum + ")");
-		} else if (relevantArticleQueue == null || relevantArticleQueueLock == null) {
-			throw new Exception("relevantArticleQueue values not initialized. "
-					+ "value is null (" + queueNum + ")");
-		} 
+	protected int readBatch(MoreoverQueueOperator queueOp, String queueName, int count) 
+	throws Exception {
+		
+		for (int i = 0; i < count; i++) {
+			
+			//dequeue next message
+			String nextArticle;
+			try { nextArticle = queueOp.dequeue(queueName); }
+			catch (NullPointerException npe) { nextArticle = null; }
+			if (nextArticle == null) {					
+				return i;
+			}
+			
+			articleCount++;
+			QueuedArticle queued = new QueuedArticle(nextArticle);
+			articleHandoff.put(queued);
+			queued.awaitProcessed();
+			
+			//delete message from queue
+			try { queueOp.deleteLast(queueName); }
+			catch (Exception e) { 
+				printToConsole("exception: failed to delete last queue item"); 
+				exceptionCount+=1;
+			}
+		}
+		return count;
 	}
 	/*================================================================================
-	 * enqueueRelevantArticle: enqueues a relevant article in the relevantArticleQueue,
-	 * using the global semaphore to ensure safe concurrency.
+	 * readClaimed: reads up to a batch from a queue, as many messages as the depthMonitor
+	 * allows. the caller must hold the queue's lock.
 	 *===============================================================================*/
-	protected void enqueueRelevantArticle(MoreoverArticle article) throws Exception{
-		relevantArticleQueueLock.acquire();
-		relevantArticleQueue.add(article);
-		relevantArticleQueueLock.release();
+	protected int readClaimed(MoreoverQueueOperator queueOp, int queue) throws Exception {
+		int claimed = depthMonitor.claim(queue, BATCH_SIZE);
+		if (claimed == 0) { return 0; }
+		int count = readBatch(queueOp, QUEUE_PREFIX + queue, claimed);
+		depthMonitor.recordRead(queue, count);
+		return count;
 	}
 	/*================================================================================
-	 * extractData: given an xml article as a string, parses and returns a MoreoverArticle
-	 * object.
+	 * stealBatch: reads a batch from the other queue with the most messages to read in
+	 * the depthMonitor snapshot, if any has a full batch and no other reader is reading
+	 * it. each queue is read through its own operator, so deleteLast always refers to
+	 * this thread's last message on that queue. returns the number of messages read.
 	 *===============================================================================*/
-	protected MoreoverArticle extractData(String articleXml) throws Exception {
-		
-		XMLOperator parser = new XMLOperator();
-		MoreoverArticle row = new MoreoverArticle();
+	protected int stealBatch() throws Exception {
 		
-		HashMap<FieldChain, List<XMLNode>> nodeMap = parser.FieldChainParseString(
-				articleXml, chainList); 
+		int target = depthMonitor.deepestQueue(queueNum, BATCH_SIZE);
+		if (target < 0) { return 0; }
 		
-		//retreive specifically referenced keychains.
-		try { row.url = nodeMap.get(urlKeyChain).get(0).innerXml.trim(); }
-		catch (NullPointerException e) { row.url = null; }
-		try { row.imageUrl = nodeMap.get(imageUrlKeyChain).get(0).innerXml.trim(); }
-		catch (NullPointerException e) { row.imageUrl = null; }
-		
-		HashMap<String, String> dataMap = parser.IdentifyAllMap(nodeMap);
-		row.sequenceId = Long.parseLong(dataMap.get("sequenceId"));
-		row.title = dataMap.get("title");
-		row.content = dataMap.get("content");
-		try { 
-			row.sourceId = Integer.parseInt(dataMap.get("id")); 
-		} catch (Exception e) { row.sourceId = 0; }
-		row.sourceName = dataMap.get("name");
-		row.sourceUrl = dataMap.get("homeUrl");
-		row.country = dataMap.get("country");
-		//try to extract publish date.
-		try { 
-			row.publishDate = new Timestamp((new SimpleDateFormat("yyyy-MM-dd")).parse(
-					dataMap.get("publishedDate").substring(0,9)).getTime());
-		} catch (Exception e) { 
-			try { 
-				row.publishDate = new Timestamp((new SimpleDateFormat("yyyy-MM-dd")).parse(
-						dataMap.get("estimatedPublishedDate").substring(0,9)).getTime());
-			} catch (Exception e1) { row.publishDate = null; }		
+		ReentrantLock lock = queueLocks[target];
+		if (!lock.tryLock()) { return 0; }
+		int count;
+		try {
+			String targetName = QUEUE_PREFIX + target;
+			MoreoverQueueOperator targetOp = stealOperators.get(target);
+			if (targetOp == null) {
+				targetOp = new MoreoverQueueOperator();
+				targetOp.connectQueue(targetName);
+				stealOperators.put(target, targetOp);
+			}
+			count = readClaimed(targetOp, target);
+		} finally {
+			lock.unlock();
 		}
-		row.recordDate = new Timestamp(new Date().getTime());
-		row.category = dataMap.get("category");
-		row.editorialRank = dataMap.get("editorialRank");
-		row.sourceUrl = dataMap.get("homeUrl");
-		
-		row.fullXml = articleXml;
 		
-		return row;
+		stolenArticleCount += count;
+		return count;
+	}
+	/*================================================================================
+	 * checkParameters: checks that parameters have been properly initialized and throws
+	 * exception if not.
+	 *===============================================================================*/
+	public void checkParameters() throws Exception {
+		if (queueNum >= Main.QUEUECOUNT || queueNum < 0) { 
+			throw new Exception("queueNum not specified, "
+					+ "or invalid queueNum specified (" + queueNum + ")");
+		} 
+		threadStamp = "(reader queue_" + queueNum + 
+				(readerNum > 0 ? "." + readerNum : "") + ") ";
+		if (articleHandoff == null) {
+			throw new Exception("articleHandoff not initialized. value is null (" + 
+					queueNum + ")");
+		}
+		if (depthMonitor == null) {
+			throw new Exception("depthMonitor not initialized. value is null (" + 
+					queueNum + ")");
+		}
 	}
 	/*================================================================================
 	 * printToConsole: prints a string to the console, including thread identification
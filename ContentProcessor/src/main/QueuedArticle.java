@@ -0,0 +1,35 @@
+package main;
+
+import java.util.concurrent.CountDownLatch;
+
+/*================================================================================
+ * QueuedArticle
+ *
+ * a raw article message passed from a QueueReaderRunnable to the matchers. the reader
+ * keeps the message on its queue until a matcher marks it processed, whether it was
+ * relevant, rejected, or failed, so a message is only deleted once it has been dealt
+ * with.
+ *===============================================================================*/
+public class QueuedArticle {
+
+	public final String xml;
+	private final CountDownLatch processed = new CountDownLatch(1);
+
+	public QueuedArticle(String xml) {
+		this.xml = xml;
+	}
+
+	/*================================================================================
+	 * markProcessed: called by the matcher once it is done with the message.
+	 *===============================================================================*/
+	public void markProcessed() {
+		processed.countDown();
+	}
+	/*================================================================================
+	 * awaitProcessed: blocks the reader until a matcher has marked the message processed.
+	 *===============================================================================*/
+	public void awaitProcessed() throws InterruptedException {
+		processed.await();
+	}
+
+}
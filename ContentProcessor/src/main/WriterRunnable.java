@@ -1,12 +1,15 @@
 package main;
 
 
-import java.awt.image.BufferedImage;
-import java.net.URL;
+import java.sql.ResultSet;
 import java.util.List;
 import java.util.Vector;
-
-import javax.imageio.ImageIO;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import Filters.FilterOperator;
 import blob.moreover.MoreoverBlobOperator;
@@ -27,38 +30,114 @@ import dbconnect.main.DBConnect;
 /*================================================================================
  * WriterRunnable
  * 
- * writes articles to the database and to blob storage. In each iteration of the 
- * loop, two blob storage writes and one database write take place. This is because:
- *  
- * 1. blobs cannot be written in batches, so no time would be saved by grouping them 
- * together.
- * 2. the id value of the document row is required as part of the other database 
- * attributes, and is only generated after insertion.
+ * this class is designed to run indefinitely.
+ * 
+ * writes articles to the database and to blob storage. the writer is the single
+ * consumer of the relevantArticleQueue: it gathers articles into a batch, and flushes
+ * the batch once it holds flushArticles articles, or once its oldest article has waited
+ * flushMillis. so the write rate follows the matchers, rather than a fixed number of
+ * articles per minute. each blobPool thread connects its own blob client on its first
+ * write and keeps it; the clients are reconnected only after a failed flush.
+ * 
+ * blobs cannot be written in batches, so the four blob writes of each article (image,
+ * source logo, content and summary) run concurrently on the blobPool, with images
+ * fetched first through the shared ImageFetcher. the writes for the next
+ * PIPELINE_DEPTH articles run ahead of the database inserts. a batch then takes about
+ * as long as its slowest uploads, rather than the sum of them. the database rows are
+ * initialized in order, as each article's blob urls become available.
+ * 
+ * image and summary blobs are stored by content hash, so identical images and
+ * snippets are written once (see writeImageBlob, writeTextBlob). the summary blob
+ * holds a plain text snippet of the content (see generateSummary). the content blob
+ * is the full message, which always holds its own sequenceId, so it is never
+ * deduplicated and keeps its name, article-<sequenceId>.xml. image and summary blobs
+ * are named image-<hash>.jpg and summary-<hash>.txt instead of by sequenceId, so
+ * readers must find them through the blob_url of their document attribute.
  * 
- * the other two inserts (for attributes & relations) are grouped together and
- * executed at the end. this turns what used to be two database writes per article
- * into two overall.
+ * the id value of the document row is required as part of the other database 
+ * attributes, and is only generated after insertion. so the document rows are inserted
+ * together in one statement batch that returns their ids (see writeDocumentRows), and
+ * then the other two inserts (for attributes & relations) are grouped together and
+ * executed at the end. a batch takes three database round trips (more only past
+ * MAX_DB_WRITE rows), rather than one per article.
+ * 
+ * Note: DBConnect only commits by closing (CommitClose), so each flush borrows a
+ * connection from Main.dbPool and commits it with the batch; the pool connects its
+ * replacement in the background.
  *===============================================================================*/
 public class WriterRunnable implements Runnable{
 
 	//parameters
-	List<MoreoverArticle> writeList = null;	
+	public MpscRingBuffer<MoreoverArticle> relevantArticleQueue = null;
 	public FilterOperator filter = null;
+	public ImageFetcher imageFetcher = null;
+	public BlobUrlCache blobUrlCache = null;
+	public BlobUrlCache blobIndex = null;
+	public int flushArticles = WRITE_LIMIT;
+	public long flushMillis = -1;
 	
 	//return values
-	public boolean threadCompleted = false;
-	public boolean exceptionFound = false;
+	public long exceptionCount = 0;
+	public long articleCount = 0;
+	public long flushCount = 0;
 	
 	//fixed parameters
 	public String writerThreadStamp = "(reader writer) ";
 	public static final int WRITE_LIMIT = 30;
 	public static final int MAX_DB_WRITE = 1000;
+	private static final int IDLE_SLEEP_MILLIS = 50;
+	//articles whose blobs are written ahead of the database inserts, and the number of
+	//blob writes in progress at once
+	public static final int PIPELINE_DEPTH = 8;
+	public static final int BLOB_THREADS = 4*PIPELINE_DEPTH;
+	public static final int SUMMARY_LENGTH = 300;
 	public static final String DOCUMENT_TYPE = "news";
 	public static final String CONTENT_KEY = "content";
 	public static final String SNIPPET_KEY = "summary";
 	public static final String IMAGE_KEY = "image";
 	public static final String RELEVANCY_KEY = "relevancy_scope";
 	public static final String SOURCE_LOGO_KEY = "source_logo";
+	
+	//threads that write blobs, and their blob clients. MoreoverBlobOperator is not
+	//known to be thread safe, so each thread has its own, replaced when the generation
+	//is advanced after a failed flush. see blobOperator.
+	private ExecutorService blobPool = null;
+	private final ThreadLocal<ThreadBlobOperator> threadBlobOperator = 
+			new ThreadLocal<ThreadBlobOperator>();
+	private volatile int blobGeneration = 0;
+	
+	//image blob writes in progress, by container and remote url. see submitImageBlob.
+	private final ConcurrentHashMap<String,CompletableFuture<String>> pendingImageBlobs = 
+			new ConcurrentHashMap<String,CompletableFuture<String>>();
+	
+	protected static class ThreadBlobOperator {
+		MoreoverBlobOperator operator;
+		int generation;
+	}
+	
+	/*================================================================================
+	 * BlobUploads: pending blob writes for one article. each resolves to a blob url.
+	 *===============================================================================*/
+	protected static class BlobUploads {
+		Future<String> image;
+		Future<String> sourceLogo;
+		Future<String> content;
+		Future<String> summary;
+		
+		String getUrl(Future<String> upload) throws Exception {
+			try { return upload.get(); }
+			catch (ExecutionException e) {
+				throw new Exception("blob write failed: " + e.getCause().getMessage(), 
+						e.getCause());
+			}
+		}
+		//image writes are not cancelled: they may be shared with other articles through
+		//pendingImageBlobs, and their blob urls are cached for later batches either way.
+		void cancel() {
+			content.cancel(true);
+			summary.cancel(true);
+		}
+	}
 		
 	/*================================================================================
 	 * run
@@ -67,132 +146,223 @@ public class WriterRunnable implements Runnable{
 	public void run() {
 		
 		try {
-			
 			checkParameters();
+			printToConsole("running writer (every " + flushArticles + " articles or " + 
+					flushMillis + " mls)");
+		} catch (Exception e) {
+			exceptionCount++;
+			e.printStackTrace();
+			return;
+		}
+		
+		//gather articles until the batch is full or its oldest article is due, then flush.
+		List<MoreoverArticle> writeList = new Vector<MoreoverArticle>();
+		long batchStart = 0;
+		while (true) {
+			MoreoverArticle nextArticle = relevantArticleQueue.poll();
+			if (nextArticle != null) {
+				if (writeList.isEmpty()) { batchStart = System.currentTimeMillis(); }
+				writeList.add(nextArticle);
+			}
 			
-			printToConsole("writer verified. writing " + writeList.size() + " articles...");
-			
-			//write articles
-					
-			List<document_attributes_row> attributesListFinal = new Vector<document_attributes_row>();					
-			List<document_relation_row> relationsListFinal = new Vector<document_relation_row>();
-			MoreoverBlobOperator blobOperator = new MoreoverBlobOperator();
-			DBConnect con = new DBConnect();
-			connectAll(blobOperator, con);
-			
-			boolean writeImage;
-			boolean writeSourceLogo;
-			for (MoreoverArticle article: writeList) {
-				
-				//perform conditions searches on the article.
-				filter.populateRelevantArticle(article);
-				
-				//attempt to write image blobs, and in doing so determine whether or not the
-				//attributes are present.
-				String imageBlobUrl = writeImageBlob(blobOperator, MoreoverBlobOperator.IMAGE_CONTAINER, 
-						article, article.imageUrl);				
-				String sourceLogoBlobUrl = writeImageBlob(blobOperator, 
-						MoreoverBlobOperator.SOURCELOGO_CONTAINER, article, article.sourceLogoUrl);
-				if (imageBlobUrl == null) { writeImage = false; }
-				else { writeImage = true; }
-				if (sourceLogoBlobUrl == null) { writeSourceLogo = false; }
-				else { writeSourceLogo = true; }
-				
-				//Write blob info first, so that generated urls can be used in attributes
-				String blobUrl = writeTextBlob(blobOperator, MoreoverBlobOperator.CONTENT_CONTAINER, 
-						article);
-				String summaryBlobUrl = writeTextBlob(blobOperator, MoreoverBlobOperator.SUMMARY_CONTAINER,
-						article);
-
-				//initialize database rows
-				document_row doc = initDocumentRow(article);
-				document_attributes_row docContent = initAttributeRow(CONTENT_KEY, blobUrl, null);
-				document_attributes_row docSummary = initAttributeRow(SNIPPET_KEY, summaryBlobUrl, null);
-				document_attributes_row docRelevancy = initAttributeRow(
-						RELEVANCY_KEY, null, article.relevanceValue);
-				List<document_relation_row> relations = filter.initRelationsRows(article);
-				
-				//connect and write document row, retreiving the id of the inserted row
-				String docStatement = document_statements.InsertRow(doc);
-				int docId = con.ExecuteGetId(docStatement, "id");				
-				
-				//update the other data rows with the returned id
-				docContent.doc_id = docId;
-				docSummary.doc_id = docId;
-				docRelevancy.doc_id = docId;
-				for (document_relation_row r: relations) {
-					r.document_id = docId;
-				}
-				
-				//add relations and attributes rows to final lists for end write.
-				attributesListFinal.add(docContent);
-				attributesListFinal.add(docSummary);
-				attributesListFinal.add(docRelevancy);
-				relationsListFinal.addAll(relations);
-				
-				//intialize the optional attributes and add to the list, if necessary
-				if (writeImage) {
-					document_attributes_row docImage = initAttributeRow(IMAGE_KEY, imageBlobUrl, 
-							article.imageUrl);
-					docImage.doc_id = docId;
-					attributesListFinal.add(docImage);
-				}
-				if (writeSourceLogo) {
-					document_attributes_row docSourceLogo = initAttributeRow(SOURCE_LOGO_KEY, 
-							sourceLogoBlobUrl, article.sourceLogoUrl);
-					docSourceLogo.doc_id = docId;
-					attributesListFinal.add(docSourceLogo);
+			if (writeList.size() >= flushArticles || (!writeList.isEmpty() && 
+					Main.getCurrentRunTime(batchStart) >= flushMillis)) {
+				flush(writeList);
+				writeList = new Vector<MoreoverArticle>();
+			} else if (nextArticle == null) {
+				try {
+					Thread.sleep(IDLE_SLEEP_MILLIS);
+				} catch (InterruptedException e) {
+					printToConsole("interrupted. thread terminated");
+					return;
 				}
+			}
+		}
+	}
+	/*================================================================================
+	 * flush: writes a batch of articles. a failed batch is dropped, as before, and the 
+	 * blob clients are reconnected for the next one.
+	 *===============================================================================*/
+	protected void flush(List<MoreoverArticle> writeList) {
+		try {
+			writeArticles(writeList);
+			articleCount += writeList.size();
+			flushCount++;
+		} catch (Exception e) {
+			exceptionCount++;
+			blobGeneration++;
+			printToConsole("exception: " + e.getMessage());
+			e.printStackTrace();
+		}
+	}
+	/*================================================================================
+	 * writeArticles: writes a batch of articles to blob storage and the database, and
+	 * commits the batch.
+	 *===============================================================================*/
+	protected void writeArticles(List<MoreoverArticle> writeList) throws Exception {
+			
+		printToConsole("writing " + writeList.size() + " articles...");
 				
-				
+		if (blobPool == null) {
+			blobPool = Executors.newFixedThreadPool(BLOB_THREADS, r -> {
+				Thread t = new Thread(r);
+				t.setDaemon(true);
+				return t;
+			});
+		}
+		DBConnect con = Main.dbPool.borrow();
+		
+		//start the blob uploads for the first PIPELINE_DEPTH articles. each time an 
+		//article's urls are collected below, the uploads for one more article are started.
+		List<BlobUploads> uploads = new Vector<BlobUploads>();
+		try {
+			for (int i = 0; i < writeList.size() && i < PIPELINE_DEPTH; i++) {
+				uploads.add(submitBlobs(writeList.get(i)));
 			}
-
-			//execute final insert for all attribute and relation rows.
-			long startTime = System.currentTimeMillis();	
-
-			writeFinalAttributeList(con, attributesListFinal);
-			writeFinalRelationList(con, relationsListFinal);
+			writeRows(con, writeList, uploads);
+		} catch (Exception e) {
+			for (BlobUploads u: uploads) { u.cancel(); }
+			Main.dbPool.discard(con);
+			throw e;
+		}
+		
+		Main.dbPool.commitClose(con);
+		
+	}
+	/*================================================================================
+	 * writeRows: initializes the database rows for each article in order, once its blob 
+	 * urls are ready. then inserts the document rows for all of them together, and the 
+	 * attribute and relation rows once the document ids are known.
+	 *===============================================================================*/
+	protected void writeRows(DBConnect con, List<MoreoverArticle> writeList, 
+	List<BlobUploads> uploads) throws Exception {
+		
+		List<document_row> documents = new Vector<document_row>();
+		List<List<document_attributes_row>> documentAttributes = 
+				new Vector<List<document_attributes_row>>();
+		List<List<document_relation_row>> documentRelations = 
+				new Vector<List<document_relation_row>>();
+		
+		for (int a = 0; a < writeList.size(); a++) {
+			MoreoverArticle article = writeList.get(a);
+			BlobUploads blobs = uploads.get(a);
 			
-			Main.printCurrentRunTime(startTime, "final writes: ", writerThreadStamp);
+			//Wait for blob info first, so that generated urls can be used in attributes.
+			//image blobs that could not be written are null, and their attributes omitted.
+			String imageBlobUrl = blobs.getUrl(blobs.image);
+			String sourceLogoBlobUrl = blobs.getUrl(blobs.sourceLogo);
+			String blobUrl = blobs.getUrl(blobs.content);
+			String summaryBlobUrl = blobs.getUrl(blobs.summary);
+			if (a + PIPELINE_DEPTH < writeList.size()) {
+				uploads.add(submitBlobs(writeList.get(a + PIPELINE_DEPTH)));
+			}
 
-			con.CommitClose();
+			//initialize database rows
+			List<document_attributes_row> attributes = new Vector<document_attributes_row>();
+			attributes.add(initAttributeRow(CONTENT_KEY, blobUrl, null));
+			attributes.add(initAttributeRow(SNIPPET_KEY, summaryBlobUrl, null));
+			attributes.add(initAttributeRow(RELEVANCY_KEY, null, article.relevanceValue));
 			
-			//declare completion.
+			//intialize the optional attributes and add to the list, if necessary
+			if (imageBlobUrl != null) {
+				attributes.add(initAttributeRow(IMAGE_KEY, imageBlobUrl, article.imageUrl));
+			}
+			if (sourceLogoBlobUrl != null) {
+				attributes.add(initAttributeRow(SOURCE_LOGO_KEY, sourceLogoBlobUrl, 
+						article.sourceLogoUrl));
+			}
 			
+			documents.add(initDocumentRow(article));
+			documentAttributes.add(attributes);
+			documentRelations.add(filter.initRelationsRows(article));
 		}
-		catch(Exception e) {
-			exceptionFound = true;
-			printToConsole("exception: " + e.getMessage());
-			e.printStackTrace();
+		
+		//write document rows, retreiving the ids of the inserted rows
+		int[] docIds = writeDocumentRows(con, documents);
+		
+		//update the other data rows with the returned ids, and add them to the final 
+		//lists for end write.
+		List<document_attributes_row> attributesListFinal = new Vector<document_attributes_row>();					
+		List<document_relation_row> relationsListFinal = new Vector<document_relation_row>();
+		for (int a = 0; a < documents.size(); a++) {
+			for (document_attributes_row r: documentAttributes.get(a)) {
+				r.doc_id = docIds[a];
+			}
+			for (document_relation_row r: documentRelations.get(a)) {
+				r.document_id = docIds[a];
+			}
+			attributesListFinal.addAll(documentAttributes.get(a));
+			relationsListFinal.addAll(documentRelations.get(a));
 		}
+
+		//execute final insert for all attribute and relation rows.
+		long startTime = System.currentTimeMillis();	
+
+		writeFinalAttributeList(con, attributesListFinal);
+		writeFinalRelationList(con, relationsListFinal);
 		
-		threadCompleted = true;
+		Main.printCurrentRunTime(startTime, "final writes: ", writerThreadStamp);
 		
-	}	
+	}
+	/*================================================================================
+	 * submitBlobs: starts the four blob writes for an article on the blobPool.
+	 *===============================================================================*/
+	protected BlobUploads submitBlobs(final MoreoverArticle article) {
+		BlobUploads u = new BlobUploads();
+		u.image = submitImageBlob(MoreoverBlobOperator.IMAGE_CONTAINER, article, 
+				article.imageUrl);
+		u.sourceLogo = submitImageBlob(MoreoverBlobOperator.SOURCELOGO_CONTAINER, 
+				article, article.sourceLogoUrl);
+		u.content = blobPool.submit(() -> writeContentBlob(article));
+		u.summary = blobPool.submit(() -> writeTextBlob(
+				MoreoverBlobOperator.SUMMARY_CONTAINER, "summary-", ".txt", 
+				generateSummary(article.content)));
+		return u;
+	}
 	/*================================================================================
 	 * checkParameters: checks that parameters have been properly initialized and throws
 	 * exception if not.
 	 *===============================================================================*/
 	public void checkParameters() throws Exception {
-		if (writeList == null) {
-			throw new Exception("write list not initialized");
-		}
-		if (writeList.size() > WRITE_LIMIT) {
-			throw new Exception("max write limit (" + WRITE_LIMIT + 
-					") exceeded. list size: " + writeList.size());
+		if (relevantArticleQueue == null) {
+			throw new Exception("relevantArticleQueue not initialized. value is null");
 		} else if (filter == null) {
 			throw new Exception("filter not initialized. value is null");
+		} else if (imageFetcher == null) {
+			throw new Exception("imageFetcher not initialized. value is null");
+		} else if (blobUrlCache == null) {
+			throw new Exception("blobUrlCache not initialized. value is null");
+		} else if (blobIndex == null) {
+			throw new Exception("blobIndex not initialized. value is null");
+		} else if (flushArticles <= 0 || flushMillis <= 0) {
+			throw new Exception("invalid flush parameters. flushArticles: " + flushArticles + 
+					", flushMillis: " + flushMillis);
 		}
 	}
 	/*================================================================================
-	 * connectAll: connects to cloud storage and database.
+	 * connectBlobs: connects to all cloud storage containers.
 	 *===============================================================================*/
-	public void connectAll(MoreoverBlobOperator blobOperator, DBConnect con) throws Exception {
+	public void connectBlobs(MoreoverBlobOperator blobOperator) throws Exception {
 		blobOperator.connect(MoreoverBlobOperator.CONTENT_CONTAINER);
 		blobOperator.connect(MoreoverBlobOperator.IMAGE_CONTAINER);
 		blobOperator.connect(MoreoverBlobOperator.SOURCELOGO_CONTAINER);
 		blobOperator.connect(MoreoverBlobOperator.SUMMARY_CONTAINER);
-		Main.connectToDatabase(con);
+	}
+	/*================================================================================
+	 * blobOperator: the blob client of the calling blobPool thread, connected on first
+	 * use, and again if the generation has advanced since it was connected.
+	 *===============================================================================*/
+	protected MoreoverBlobOperator blobOperator() throws Exception {
+		ThreadBlobOperator current = threadBlobOperator.get();
+		int generation = blobGeneration;
+		if (current == null || current.generation != generation) {
+			current = new ThreadBlobOperator();
+			current.operator = new MoreoverBlobOperator();
+			current.generation = generation;
+			connectBlobs(current.operator);
+			threadBlobOperator.set(current);
+		}
+		return current.operator;
 	}
 	/*================================================================================
 	 * row initalizers: functions to initialize database row objects. the 'relations'
@@ -223,26 +393,142 @@ public class WriterRunnable implements Runnable{
 	}
 	
 	/*================================================================================
-	 * writeImageBlob/writeTextBlob: writes blob, and returns the blob url.
+	 * submitImageBlob: fetches an image through the imageFetcher, then writes it on the 
+	 * blobPool. resolves to null if there is no image, or it could not be fetched.
+	 * 
+	 * an image already written to the container is not fetched again: its blob url is 
+	 * taken from the blobUrlCache, or from the write still in progress for an earlier 
+	 * article in the pipeline.
 	 *===============================================================================*/
-	protected String writeImageBlob(MoreoverBlobOperator blobOperator, String containerName, 
-			MoreoverArticle article, String imageUrl) {
+	protected Future<String> submitImageBlob(final String containerName, 
+	final MoreoverArticle article, String imageUrl) {
+		if (imageUrl == null) { return CompletableFuture.completedFuture(null); }
+		
+		final String key = containerName + " " + imageUrl;
+		String cachedUrl = blobUrlCache.get(key);
+		if (cachedUrl != null) { return CompletableFuture.completedFuture(cachedUrl); }
+		CompletableFuture<String> pending = pendingImageBlobs.get(key);
+		if (pending != null) { return pending; }
+		
+		final CompletableFuture<String> upload = imageFetcher.fetch(imageUrl)
+				.thenApplyAsync(img -> writeImageBlob(containerName, article, img), 
+						blobPool)
+				.exceptionally(e -> {
+					printToConsole("image fetch exception: " + 
+							(e.getCause() == null ? e : e.getCause()).getMessage());
+					return null;
+				});
+		pendingImageBlobs.put(key, upload);
+		upload.whenComplete((blobUrl, e) -> {
+			if (blobUrl != null) { blobUrlCache.put(key, blobUrl); }
+			pendingImageBlobs.remove(key, upload);
+		});
+		return upload;
+	}
+	/*================================================================================
+	 * writeImageBlob/writeTextBlob: writes blob, and returns the blob url. blobs are 
+	 * named by the hash of their content, and a payload already in the blobIndex for 
+	 * the container is not written again; its stored blob url is returned instead.
+	 * writeContentBlob writes the article's full xml under its sequenceId, as before.
+	 *===============================================================================*/
+	protected String writeImageBlob(String containerName, MoreoverArticle article, 
+	ImageFetcher.FetchedImage img) {
 		
-		if (imageUrl == null) { return null; }
 		try {
-			URL imgUrl = new URL(imageUrl);
-			BufferedImage img = ImageIO.read(imgUrl);
-			return blobOperator.writeBlobImage(MoreoverBlobOperator.IMAGE_CONTAINER, 
-					"image-"+ article.sequenceId +".jpg", img);
+			String key = containerName + " " + img.hash;
+			String blobUrl = blobIndex.get(key);
+			if (blobUrl == null) {
+				blobUrl = blobOperator().writeBlobImage(containerName, 
+						"image-"+ img.hash +".jpg", img.image);
+				blobIndex.put(key, blobUrl);
+			}
+			return blobUrl;
 		} catch(Exception e) {
 			printToConsole("image blob exception: " + e.getMessage());
 			return null;
 		}
 	}
-	protected String writeTextBlob(MoreoverBlobOperator blobOperator, String containerName, 
-	MoreoverArticle article) throws Exception{
-		return blobOperator.writeBlobText(containerName, "article-"+article.sequenceId+".xml", 
-				article.fullXml);
+	protected String writeTextBlob(String containerName, String prefix, String extension, 
+	String text) throws Exception{
+		String hash = ContentHash.of(text);
+		String key = containerName + " " + hash;
+		String blobUrl = blobIndex.get(key);
+		if (blobUrl == null) {
+			blobUrl = blobOperator().writeBlobText(containerName, prefix + hash + extension, text);
+			blobIndex.put(key, blobUrl);
+		}
+		return blobUrl;
+	}
+	protected String writeContentBlob(MoreoverArticle article) throws Exception {
+		return blobOperator().writeBlobText(MoreoverBlobOperator.CONTENT_CONTAINER, 
+				"article-" + article.sequenceId + ".xml", article.fullXml);
+	}
+	/*================================================================================
+	 * generateSummary: plain text snippet of an article's content: markup removed, 
+	 * common entities decoded and whitespace collapsed, cut at a word boundary to at 
+	 * most SUMMARY_LENGTH characters.
+	 *===============================================================================*/
+	protected static String generateSummary(String content) {
+		
+		if (content == null) { return ""; }
+		String text = content;
+		for (int pass = 0; pass < 2; pass++) {
+			//content may hold escaped html, so decode and strip twice
+			text = text.replaceAll("<!\\[CDATA\\[|\\]\\]>", "")
+					.replaceAll("<[^>]*>", " ")
+					.replace("&lt;", "<").replace("&gt;", ">").replace("&quot;", "\"")
+					.replace("&apos;", "'").replace("&#39;", "'").replace("&nbsp;", " ")
+					.replace("&amp;", "&");
+		}
+		text = text.replaceAll("<[^>]*>", " ").replaceAll("\\s+", " ").trim();
+		
+		if (text.length() <= SUMMARY_LENGTH) { return text; }
+		int end = text.lastIndexOf(' ', SUMMARY_LENGTH);
+		if (end <= 0) { end = SUMMARY_LENGTH; }
+		return text.substring(0, end) + "...";
+	}
+	/*================================================================================
+	 * writeDocumentRows: inserts document rows, and returns their ids in order. each
+	 * MAX_DB_WRITE rows are sent as one statement batch: the single row inserts, each
+	 * followed by recording its SCOPE_IDENTITY against its index, and a final select of
+	 * the recorded ids. so every id is matched to its row, without relying on the order 
+	 * rows are inserted or returned in.
+	 *===============================================================================*/
+	protected int[] writeDocumentRows(DBConnect con, List<document_row> documents) 
+	throws Exception {
+		
+		int[] docIds = new int[documents.size()];
+		for (int i = 0; documents.size() > i*MAX_DB_WRITE; i++) {
+			
+			int fromIndex = i*MAX_DB_WRITE;
+			int toIndex = Math.min(documents.size(), (i+1)*MAX_DB_WRITE);
+			
+			StringBuilder batch = new StringBuilder(
+					"SET NOCOUNT ON; DECLARE @ids TABLE (n int, id int); ");
+			for (int d = fromIndex; d < toIndex; d++) {
+				String insert = document_statements.InsertRow(documents.get(d)).trim();
+				if (insert.endsWith(";")) { insert = insert.substring(0, insert.length() - 1); }
+				batch.append(insert).append("; INSERT INTO @ids VALUES (").append(d)
+						.append(", SCOPE_IDENTITY()); ");
+			}
+			batch.append("SELECT n, id FROM @ids;");
+			
+			ResultSet rs = con.ExecuteQuery(batch.toString());
+			int count = 0;
+			try {
+				while (rs.next()) {
+					docIds[rs.getInt(1)] = rs.getInt(2);
+					count++;
+				}
+			} finally {
+				rs.close();
+			}
+			if (count != toIndex - fromIndex) {
+				throw new Exception("document insert returned " + count + " ids for " + 
+						(toIndex - fromIndex) + " rows");
+			}
+		}
+		return docIds;
 	}
 	/*================================================================================
 	 * writeFinalLists: writes final attribute and relation lists, accounting for the
@@ -0,0 +1,104 @@
+package main;
+
+import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+
+import xmlparser.AuxFileHandling.FieldChainInterpreter;
+import xmlparser.Operations.XMLOperator;
+import xmlparser.Types.FieldChain;
+import xmlparser.Types.XMLNode;
+
+/*================================================================================
+ * XMLArticleExtractor
+ *
+ * the original extraction path, unchanged: the chains set up in Main and the
+ * extractData of QueueReaderRunnable, as they were before ArticleExtractor. kept as a
+ * fallback for ArticleExtractor (-DarticleExtraction=xml, see Main), and as the
+ * reference for ExtractorParityCheck, so do not change its output. a parser is created
+ * for each article, as before, and the chains are only read, so a single instance is
+ * shared by all matcher threads.
+ *===============================================================================*/
+public class XMLArticleExtractor {
+
+	public final List<FieldChain> chainList = (new FieldChainInterpreter()).GetChainsDirect(
+			new ArrayList<>(Arrays.asList(
+			"TEXT,content",
+			"TEXT,estimatedPublishedDate",
+			"TEXT,location,country",
+			"TEXT,publishedDate",
+			"TEXT,sequenceId",
+			"TEXT,source,category",
+			"TEXT,source,editorialRank",
+			"TEXT,source,feed,imageUrl",
+			"TEXT,source,homeUrl",
+			"TEXT,source,id",
+			"TEXT,source,name",
+			"TEXT,title"
+	)));
+	public final FieldChain imageUrlKeyChain;
+	public final FieldChain urlKeyChain;
+
+	public XMLArticleExtractor() {
+		//add chains to list that need to be specifically referenced later on. this is required
+		//becuse they have the same field name ('url'), so the regular map method of retreiving
+		//the data won't work.
+		imageUrlKeyChain = (new FieldChainInterpreter()).GetSingleFieldChain("TEXT,media,image,url");
+		urlKeyChain = (new FieldChainInterpreter()).GetSingleFieldChain("TEXT,url");
+		chainList.add(imageUrlKeyChain);
+		chainList.add(urlKeyChain);
+	}
+
+	/*================================================================================
+	 * extractData: given an xml article as a string, parses and returns a MoreoverArticle
+	 * object.
+	 *===============================================================================*/
+	protected MoreoverArticle extractData(String articleXml) throws Exception {
+		
+		XMLOperator parser = new XMLOperator();
+		MoreoverArticle row = new MoreoverArticle();
+		
+		HashMap<FieldChain, List<XMLNode>> nodeMap = parser.FieldChainParseString(
+				articleXml, chainList); 
+		
+		//retreive specifically referenced keychains.
+		try { row.url = nodeMap.get(urlKeyChain).get(0).innerXml.trim(); }
+		catch (NullPointerException e) { row.url = null; }
+		try { row.imageUrl = nodeMap.get(imageUrlKeyChain).get(0).innerXml.trim(); }
+		catch (NullPointerException e) { row.imageUrl = null; }
+		
+		HashMap<String, String> dataMap = parser.IdentifyAllMap(nodeMap);
+		row.sequenceId = Long.parseLong(dataMap.get("sequenceId"));
+		row.title = dataMap.get("title");
+		row.content = dataMap.get("content");
+		try { 
+			row.sourceId = Integer.parseInt(dataMap.get("id")); 
+		} catch (Exception e) { row.sourceId = 0; }
+		row.sourceName = dataMap.get("name");
+		row.sourceUrl = dataMap.get("homeUrl");
+		row.country = dataMap.get("country");
+		//try to extract publish date.
+		try { 
+			row.publishDate = new Timestamp((new SimpleDateFormat("yyyy-MM-dd")).parse(
+					dataMap.get("publishedDate").substring(0,9)).getTime());
+		} catch (Exception e) { 
+			try { 
+				row.publishDate = new Timestamp((new SimpleDateFormat("yyyy-MM-dd")).parse(
+						dataMap.get("estimatedPublishedDate").substring(0,9)).getTime());
+			} catch (Exception e1) { row.publishDate = null; }		
+		}
+		row.recordDate = new Timestamp(new Date().getTime());
+		row.category = dataMap.get("category");
+		row.editorialRank = dataMap.get("editorialRank");
+		row.sourceUrl = dataMap.get("homeUrl");
+		
+		row.fullXml = articleXml;
+		
+		return row;
+	}
+
+}